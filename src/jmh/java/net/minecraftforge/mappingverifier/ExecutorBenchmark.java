@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) Forge Development LLC
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+package net.minecraftforge.mappingverifier;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.util.Textifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import joptsimple.OptionParser;
+import net.minecraftforge.srgutils.IMappingFile;
+
+/**
+ * Reads the jars on our own classpath using each executor backend.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ExecutorBenchmark {
+    @Param({"SERIAL", "FORKJOIN", "VIRTUAL"})
+    public ExecutorBackend backend;
+
+    private final List<File> jars = new ArrayList<>();
+
+    @Setup
+    public void setup() throws URISyntaxException {
+        if (backend == ExecutorBackend.VIRTUAL && !ExecutorBackend.hasVirtualThreads())
+            throw new IllegalStateException("Virtual threads are not supported on " + System.getProperty("java.version"));
+
+        for (Class<?> cls : new Class<?>[] { Opcodes.class, ClassNode.class, Textifier.class, OptionParser.class, IMappingFile.class })
+            jars.add(new File(cls.getProtectionDomain().getCodeSource().getLocation().toURI()));
+    }
+
+    @Benchmark
+    public InheratanceMap load() throws Exception {
+        MappingVerifier mv = new MappingVerifier();
+        mv.setExecutor(backend);
+        for (File jar : jars)
+            mv.loadLibrary(jar);
+        return mv.getInheratance();
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) Forge Development LLC
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+package net.minecraftforge.mappingverifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.minecraftforge.mappingverifier.InheratanceMap.Class;
+import net.minecraftforge.mappingverifier.InheratanceMap.Method;
+
+/**
+ * Builds, resolves and queries the inheritance map of generated classes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class InheratanceBenchmark {
+    @Param({"DEEP", "DIAMOND", "WIDE"})
+    public Corpus.Shape shape;
+
+    @Param({"1000"})
+    public int size;
+
+    private List<byte[]> classes;
+    private InheratanceMap resolved;
+    private InheratanceMap unresolved;
+
+    @Setup
+    public void setup() {
+        classes = new ArrayList<>(Corpus.of(shape, size).generate(new StringBuilder()).values());
+        resolved = load();
+        resolved.resolve();
+        // Fill the lazily computed stacks, so the lookups don't measure computing them.
+        resolved.getOwned().forEach(Class::getStack);
+    }
+
+    // Resolving changes the map, so every invocation needs a new one.
+    @Setup(Level.Invocation)
+    public void setupInvocation() {
+        unresolved = load();
+    }
+
+    private InheratanceMap load() {
+        InheratanceMap ret = new InheratanceMap();
+        for (byte[] data : classes)
+            ret.processClass(data, true);
+        return ret;
+    }
+
+    @Benchmark
+    public InheratanceMap processClass() {
+        return load();
+    }
+
+    @Benchmark
+    public InheratanceMap resolve() {
+        unresolved.resolve();
+        return unresolved;
+    }
+
+    @Benchmark
+    public int getStack() {
+        int ret = 0;
+        for (Class cls : resolved.getOwned())
+            ret += cls.getStack().size();
+        return ret;
+    }
+
+    // The verifiers' most common question, does anything above this class have the same method.
+    @Benchmark
+    public int getMethod() {
+        int ret = 0;
+        for (Class cls : resolved.getOwned()) {
+            for (Method mtd : cls.getMethods().values()) {
+                for (Class parent : cls.getStack()) {
+                    if (parent.getMethod(mtd.name, mtd.desc) != null)
+                        ret++;
+                }
+            }
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) Forge Development LLC
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+package net.minecraftforge.mappingverifier;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.minecraftforge.mappingverifier.InheratanceMap.Class;
+import net.minecraftforge.mappingverifier.InheratanceMap.Field;
+import net.minecraftforge.mappingverifier.InheratanceMap.Method;
+import net.minecraftforge.mappingverifier.InheratanceMap.Node;
+
+/**
+ * Runs the verifiers, and each phase of OverrideNames, against a frozen map of a generated {@link Corpus}.
+ * The errors are not kept, so memory doesn't grow between invocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class VerifierBenchmark {
+    @Param({"DEEP", "DIAMOND", "WIDE"})
+    public Corpus.Shape shape;
+
+    @Param({"1000"})
+    public int size;
+
+    private MappingVerifier verifier;
+    private InheratanceMap inh;
+    private OverrideNames overrides;
+    private UniqueIDs ids;
+    private AccessLevels access;
+
+    @Setup
+    public void setup() throws IOException {
+        // The verifiers log every phase, which would be measured too.
+        Main.LOG.setLevel(java.util.logging.Level.WARNING);
+
+        StringBuilder mapping = new StringBuilder();
+        Map<String, byte[]> classes = Corpus.of(shape, size).generate(mapping);
+        verifier = new MappingVerifier();
+        verifier.loadMap(new ByteArrayInputStream(mapping.toString().getBytes(StandardCharsets.UTF_8)));
+        verifier.setRetainErrors(false);
+        verifier.loadJar(ClassProvider.fromMemory(classes));
+        inh = verifier.getInheratance().freeze();
+
+        overrides = new OverrideNames(verifier);
+        ids = new UniqueIDs(verifier);
+        access = new AccessLevels(verifier);
+    }
+
+    // Checking the hierarchies caches each class's methods, so every invocation needs them cleared.
+    @Setup(Level.Invocation)
+    public void setupInvocation() {
+        overrides.begin();
+    }
+
+    @Benchmark
+    public int findNode() {
+        int ret = 0;
+        for (Class cls : inh.getOwned()) {
+            for (Reference ref : cls.getReferences()) {
+                Class owner = inh.findClass(ref.owner);
+                if (owner == null || ref.kind == Reference.Kind.CLASS)
+                    continue;
+                Node node = ref.kind == Reference.Kind.FIELD
+                    ? AccessLevels.findNode(owner, c -> c.getField(ref.name))
+                    : AccessLevels.findNode(owner, c -> c.getMethod(ref.name, ref.desc));
+                if (node != null)
+                    ret++;
+            }
+        }
+        return ret;
+    }
+
+    @Benchmark
+    public boolean accessLevels() {
+        return access.process();
+    }
+
+    @Benchmark
+    public boolean uniqueIds() {
+        return ids.process();
+    }
+
+    @Benchmark
+    public boolean overrideNames() {
+        return overrides.process();
+    }
+
+    // Building the reverse mapping, the renamed methods and the hierarchy links.
+    @Benchmark
+    public OverrideNames overrideBegin() {
+        overrides.begin();
+        return overrides;
+    }
+
+    // Checking every field and method against its parents.
+    @Benchmark
+    public OverrideNames overrideMembers() {
+        for (Class cls : inh.getOwned()) {
+            overrides.visitClass(cls);
+            for (Field field : cls.getFields().values())
+                overrides.visitField(cls, field);
+            for (Method method : cls.getMethods().values())
+                overrides.visitMethod(cls, method);
+        }
+        return overrides;
+    }
+
+    // Checking every override set of every class's hierarchy.
+    @Benchmark
+    public OverrideNames overrideHierarchy() {
+        for (Class cls : inh.getOwned())
+            overrides.visitEnd(cls);
+        return overrides;
+    }
+
+    // Checking the interfaces that are satisfied by a parent class.
+    @Benchmark
+    public boolean overrideInterfaces() {
+        return overrides.end();
+    }
+}
@@ -6,172 +6,198 @@ package net.minecraftforge.mappingverifier;
 
 import java.lang.reflect.Modifier;
 import java.util.ArrayDeque;
+import java.util.Collections;
 import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.function.Function;
-import java.util.stream.Collectors;
-
-import org.objectweb.asm.tree.AbstractInsnNode;
-import org.objectweb.asm.tree.ClassNode;
-import org.objectweb.asm.tree.FieldInsnNode;
-import org.objectweb.asm.tree.MethodInsnNode;
-import org.objectweb.asm.tree.MethodNode;
-import org.objectweb.asm.tree.TypeInsnNode;
+import java.util.function.Supplier;
+
 import net.minecraftforge.mappingverifier.InheratanceMap.Class;
 import net.minecraftforge.mappingverifier.InheratanceMap.Node;
 
-public class AccessLevels extends SimpleVerifier {
+public class AccessLevels extends SimpleVerifier implements IClassVerifier {
+    private final Map<Reference, Node> targets = new HashMap<>();
+    private final Map<Class, Packages> packages = new HashMap<>();
+    private Set<String> moved;
+    private boolean success;
+
+    // State for the class currently being visited
+    private Packages pkg;
+    private Class current;
+    private String newCls;
+    private Set<String> warned;
+
     protected AccessLevels(MappingVerifier verifier) {
         super(verifier);
     }
 
     @Override
     public boolean process() {
+        return verifier.visit(Collections.singletonList(this));
+    }
+
+    @Override
+    public boolean isIncremental() {
+        return true;
+    }
+
+    @Override
+    public void begin() {
         Main.LOG.info("AccessLevels:");
-        InheratanceMap inh = verifier.getInheratance();
-
-        boolean success = true;
-        for (Class cls : inh.getOwned()) {
-            Main.LOG.fine("  Processing: " + mapClass(cls.name));
-            ClassNode node = inh.getNode(cls.name);
-
-            if (node == null) {
-                error("  Missing node: " + cls.name);
-                success = false;
-                continue; //Does this ever happen?
-            }
-
-            Set<String> warned = new HashSet<>();
-
-            String newCls = mapClass(cls.name);
-            String pkg = packageName(newCls);
-
-            List<MethodNode> methods = node.methods.stream().sequential()
-                .sorted((o1, o2) -> o1.name.equals(o2.name) ? o1.desc.compareTo(o2.desc) : o1.name.compareTo(o2.name))
-                .collect(Collectors.toList());
-
-            for (MethodNode mt : methods) {
-                for (AbstractInsnNode isn : mt.instructions.toArray()) {
-                    if (isn instanceof FieldInsnNode) {
-                        FieldInsnNode field = (FieldInsnNode)isn;
-
-                        boolean isSelf = field.owner.equals(node.name);
-
-                        if (isSelf) //We can access anything in ourself
-                            continue;
-
-                        Class owner = inh.getClass(field.owner);
-                        if (!owner.wasRead()) //If it wasn't read, we don't have the access levels, so we can't check anything, just assume its right.
-                            continue;
-
-                        Node target = findNode(owner, c -> c.getField(field.name)); //Include desc?
-                        if (target == null) { //We can't find it in the inheritance tree... So not in our reobfed code, assume correct.
-                            /*
-                            String newOwner = map.map(field.owner);
-                            String newField = map.getClass(field.owner).map(field.name);
-                            log("    Invalid target: %s/%s %s", newCls, newName, newSignature);
-                            log("      %s: %s/%s", Printer.OPCODES[isn.getOpcode()], newOwner, newField);
-                            */
-                            continue;
-                        }
-
-                        String newOwner = mapClass(target.owner.name);
-                        String newField = mapField(target.owner.name, field.name);
-
-                        boolean isPackage = pkg.equals(packageName(newOwner));
-                        boolean isSubclass = cls.getStack().contains(target.owner);
-
-                        success &= canAccess(newCls, newOwner + "/" + newField, target.access, isPackage, isSubclass, isSelf, warned);
-                    } else if (isn instanceof MethodInsnNode) {
-                        MethodInsnNode method = (MethodInsnNode)isn;
-
-                        boolean isSelf = method.owner.equals(node.name);
-                        if (isSelf) //We can access anything in ourself
-                            continue;
-
-                        Class owner = inh.getClass(method.owner);
-                        if (!owner.wasRead()) //If it wasn't read, we don't have the access levels, no do we have inheritance, so we can't check anything, just assume its right.
-                            continue;
-
-                        Node target = findNode(owner, c -> c.getMethod(method.name, method.desc));
-                        String newDesc = mapDescriptor(method.desc);
-
-                        if (target == null) { //We can't find it in the inheritance tree... So not in our reobfed code, assume correct.
-                            /*
-                            String newOwner = map.map(method.owner);
-                            String newMethod = map.getClass(method.owner).map(method.name, method.desc);
-                            log("    Invalid target: %s/%s %s", newCls, newName, newSignature);
-                            log("      %s: %s/%s %s", Printer.OPCODES[isn.getOpcode()], newOwner, newMethod, newDesc);
-                            */
-                            continue;
-                        }
-
-                        String newOwner = mapClass(target.owner.name);
-                        String newMethod = mapMethod(target.owner.name, method.name, method.desc);
-
-                        boolean isPackage = pkg.equals(packageName(newOwner));
-                        boolean isSubclass = cls.getStack().contains(target.owner);
-                        success &= canAccess(newCls, newOwner + "/" + newMethod + newDesc, target.access, isPackage, isSubclass, isSelf, warned);
-                    } else if (isn instanceof TypeInsnNode) {
-                        String obfed = ((TypeInsnNode)isn).desc;
-                        boolean isSelf = obfed.equals(node.name);
-
-                        if (isSelf) //We can access anything in ourself
-                            continue;
-
-                        Class owner = inh.getClass(obfed);
-                        if (!owner.wasRead()) //If it wasn't read, we don't have the access levels, so we can't check anything, just assume its right.
-                            continue;
-
-                        String newOwner = mapClass(obfed);
-                        boolean isPackage = pkg.equals(packageName(newOwner));
-                        boolean isSubclass = cls.getStack().contains(inh.getClass(obfed));
-                        success &= canAccess(newCls, newOwner, owner.getAccess(), isPackage, isSubclass, isSelf, warned);
-                    }
-                }
-            }
+        this.moved = findMovedPackages(verifier.getInheratance());
+        this.success = true;
+    }
+
+    @Override
+    public void visitClass(Class cls) {
+        Main.LOG.fine("  Processing: " + mapClass(cls.name));
+        this.pkg = getPackages(cls);
+        this.current = cls;
+        this.newCls = mapClass(cls.name);
+        this.warned = new HashSet<>();
+    }
+
+    @Override
+    public void visitReference(Class cls, Reference ref) {
+        if (!moved.contains(pkg.obf)) //Nothing can gain or lose package access to this class, so the original bytecode is still valid.
+            return;
+
+        Class owner = verifier.getInheratance().findClass(ref.owner);
+        if (owner == null || !owner.wasRead()) //If it wasn't read, we don't have the access levels, no do we have inheritance, so we can't check anything, just assume its right.
+            return;
+
+        if (ref.kind == Reference.Kind.CLASS) {
+            Packages target = getPackages(owner);
+            if (!pkg.isChanged(target))
+                return;
+
+            boolean isPackage = pkg.mapped == target.mapped;
+            boolean isSubclass = cls.getStack().contains(owner);
+            success &= canAccess(newCls, () -> mapClass(owner.name), owner.getAccess(), isPackage, isSubclass, false, warned);
+            return;
         }
 
+        Node target = findTarget(owner, ref);
+        if (target == null) //We can't find it in the inheritance tree... So not in our reobfed code, assume correct.
+            return;
+
+        Packages tpkg = getPackages(target.owner);
+        if (!pkg.isChanged(tpkg))
+            return;
+
+        boolean isPackage = pkg.mapped == tpkg.mapped;
+        boolean isSubclass = cls.getStack().contains(target.owner);
+        success &= canAccess(newCls, () -> mapTarget(target, ref), target.access, isPackage, isSubclass, false, warned);
+    }
+
+    @Override
+    public boolean end() {
         return success;
     }
 
+    /*
+     * The original bytecode already passed the JVM's access checks, and the mapping can't change access flags or
+     * the class hierarchy. So the only way an access can become invalid is if the source and target go from being
+     * in the same package to different ones, or the other way around.
+     *
+     * An obfed package can only change that relationship if its classes get split into different packages, or if
+     * the mapped package it ends up in also gets classes from somewhere else. Returns all such obfed packages.
+     */
+    private Set<String> findMovedPackages(InheratanceMap inh) {
+        Map<String, Set<String>> targets = new HashMap<>();
+        Map<String, Set<String>> sources = new HashMap<>();
+        for (Class cls : inh.getClasses()) {
+            Packages pkg = getPackages(cls);
+            targets.computeIfAbsent(pkg.obf, k -> new HashSet<>()).add(pkg.mapped);
+            sources.computeIfAbsent(pkg.mapped, k -> new HashSet<>()).add(pkg.obf);
+        }
+
+        Set<String> moved = new HashSet<>();
+        for (Entry<String, Set<String>> e : targets.entrySet()) {
+            Set<String> mapped = e.getValue();
+            if (mapped.size() != 1 || sources.get(mapped.iterator().next()).size() != 1)
+                moved.add(e.getKey());
+        }
+
+        Main.LOG.fine("  Moved Packages: " + moved.size() + "/" + targets.size());
+        return moved;
+    }
+
+    private Packages getPackages(Class cls) {
+        return packages.computeIfAbsent(cls, c -> new Packages(packageName(c.name), packageName(mapClass(c.name))));
+    }
+
     private String packageName(String clsName) {
         int idx = clsName.lastIndexOf('/');
         return idx == -1 ? "" : clsName.substring(0, idx);
     }
 
-    private boolean canAccess(String source, String target, int access, boolean isPackage, boolean isSubclass, boolean isSelf, Set<String> warned) {
-        String key = source  + " -> " + target;
-        if (warned.contains(key))
-            return false;
+    private String mapTarget(Node target, Reference ref) {
+        String newOwner = mapClass(target.owner.name);
+        if (ref.kind == Reference.Kind.FIELD)
+            return newOwner + "/" + mapField(target.owner.name, ref.name);
+        return newOwner + "/" + mapMethod(target.owner.name, ref.name, ref.desc) + mapDescriptor(ref.desc);
+    }
 
+    private static class Packages {
+        private final String obf;
+        private final String mapped;
+
+        private Packages(String obf, String mapped) {
+            // Interned so that they can be compared by identity
+            this.obf = obf.intern();
+            this.mapped = mapped.intern();
+        }
+
+        private boolean isChanged(Packages target) {
+            return (this.obf == target.obf) != (this.mapped == target.mapped);
+        }
+    }
+
+    private boolean canAccess(String source, Supplier<String> target, int access, boolean isPackage, boolean isSubclass, boolean isSelf, Set<String> warned) {
+        String level = null;
         if (Modifier.isPublic(access)) {
             return true; //Public anyone can access;
         } else if (Modifier.isProtected(access)) {
-            if (!isPackage && !isSubclass) {
-                warned.add(key);
-                error("    Invalid Access: %s -> %s PROTECTED", source, target);
-                return false;
-            }
+            if (!isPackage && !isSubclass)
+                level = "PROTECTED";
         } else if (Modifier.isPrivate(access)) {
-            if (!isSelf) {
-                warned.add(key);
-                error("    Invalid Access: %s -> %s PRIVATE", source, target);
-                return false;
-            }
+            if (!isSelf)
+                level = "PRIVATE";
         } else { //default modifier, we need this as a else, cuz it has no flag
-            if (!isSelf && !isPackage) {
-                warned.add(key);
-                error("    Invalid Access: %s -> %s DEFAULT", source, target);
-                return false;
-            }
+            if (!isSelf && !isPackage)
+                level = "DEFAULT";
         }
-        return true;
+
+        if (level == null)
+            return true;
+
+        // Only build the names when we need to log them, the same target is only warned about once per class.
+        String newTarget = target.get();
+        if (warned.add(source + " -> " + newTarget))
+            diagnostic("Invalid Access").at(current.name).mapped(source, newTarget).report("    Invalid Access: %s -> %s " + level, source, newTarget);
+        return false;
+    }
+
+    // Resolving a reference only depends on the reference itself, so share it across every class that uses it.
+    private Node findTarget(Class owner, Reference ref) {
+        if (targets.containsKey(ref))
+            return targets.get(ref);
+
+        Node target;
+        if (ref.kind == Reference.Kind.FIELD)
+            target = findNode(owner, c -> c.getField(ref.name)); //Include desc?
+        else
+            target = findNode(owner, c -> c.getMethod(ref.name, ref.desc));
+        targets.put(ref, target);
+        return target;
     }
 
-    private Node findNode(Class start, Function<Class, Node> func) {
+    static Node findNode(Class start, Function<Class, Node> func) {
         Deque<Class> q = new ArrayDeque<>();
         q.add(start);
         q.addAll(start.getStack());
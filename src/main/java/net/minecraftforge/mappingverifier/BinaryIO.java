@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) Forge Development LLC
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+package net.minecraftforge.mappingverifier;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Shared parts of the binary files written by {@link IncrementalState}, {@link ResultCache} and {@link Shards}, and of the {@link Daemon} protocol.
+ */
+final class BinaryIO {
+    private BinaryIO() {}
+
+    // Error lines can be longer then writeUTF allows
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] data = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        byte[] data = new byte[in.readInt()];
+        in.readFully(data);
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+    static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null)
+            writeString(out, value);
+    }
+
+    static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? readString(in) : null;
+    }
+
+    static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values)
+            writeString(out, value);
+    }
+
+    static List<String> readStrings(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        if (size == 0)
+            return Collections.emptyList();
+        List<String> ret = new ArrayList<>(size);
+        for (int x = 0; x < size; x++)
+            ret.add(readString(in));
+        return ret;
+    }
+
+    static void writeDiagnostics(DataOutputStream out, List<Diagnostic> diagnostics) throws IOException {
+        out.writeInt(diagnostics.size());
+        for (Diagnostic diagnostic : diagnostics)
+            diagnostic.write(out);
+    }
+
+    static List<Diagnostic> readDiagnostics(DataInputStream in, String task) throws IOException {
+        int size = in.readInt();
+        List<Diagnostic> ret = new ArrayList<>(size);
+        for (int x = 0; x < size; x++)
+            ret.add(Diagnostic.read(in, task));
+        return ret;
+    }
+}
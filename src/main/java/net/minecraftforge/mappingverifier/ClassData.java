@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) Forge Development LLC
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+package net.minecraftforge.mappingverifier;
+
+import java.lang.reflect.Modifier;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.InvokeDynamicInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LineNumberNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+/**
+ * Everything {@link InheratanceMap} needs from a class file, without anything that depends on the other classes it is loaded with.
+ * So it is immutable and can be shared between maps, see {@link ClassStore}.
+ */
+final class ClassData {
+    private static final Handle LAMBDA_METAFACTORY = new Handle(Opcodes.H_INVOKESTATIC, "java/lang/invoke/LambdaMetafactory", "metafactory",       "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;Ljava/lang/invoke/MethodType;Ljava/lang/invoke/MethodHandle;Ljava/lang/invoke/MethodType;)Ljava/lang/invoke/CallSite;", false);
+    private static final Handle LAMBDA_ALTMETAFACTORY = new Handle(Opcodes.H_INVOKESTATIC, "java/lang/invoke/LambdaMetafactory", "altMetafactory", "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;[Ljava/lang/Object;)Ljava/lang/invoke/CallSite;", false);
+
+    final String name;
+    final int access;
+    final byte[] hash;
+    final String parent;
+    final String[] interfaces;
+    final Member[] fields;
+    final Member[] methods;
+    /** Only gathered when asked for, as only owned classes need them. Null if they were not. */
+    final Set<Reference> references;
+
+    ClassData(ClassNode node, byte[] hash, boolean references, UnaryOperator<String> intern) {
+        this.name = intern.apply(node.name);
+        this.access = node.access;
+        this.hash = hash;
+        this.parent = node.superName == null ? null : intern.apply(node.superName);
+
+        this.interfaces = new String[node.interfaces.size()];
+        for (int x = 0; x < interfaces.length; x++)
+            this.interfaces[x] = intern.apply(node.interfaces.get(x));
+
+        this.fields = new Member[node.fields.size()];
+        for (int x = 0; x < fields.length; x++) {
+            FieldNode fld = node.fields.get(x);
+            this.fields[x] = new Member(intern.apply(fld.name), intern.apply(fld.desc), fld.access, null);
+        }
+
+        //Gather Lambda methods so we can skip them in bouncers?
+        Set<String> lambdas = findLambdas(node);
+        this.methods = new Member[node.methods.size()];
+        for (int x = 0; x < methods.length; x++) {
+            MethodNode mtd = node.methods.get(x);
+            MethodInsnNode bounce = lambdas.contains(node.name + '/' + mtd.name + mtd.desc) ? null : findBounce(mtd);
+            this.methods[x] = new Member(intern.apply(mtd.name), intern.apply(mtd.desc), mtd.access, bounce == null ? null :
+                new String[] { intern.apply(bounce.owner), intern.apply(bounce.name), intern.apply(bounce.desc) });
+        }
+
+        this.references = references ? Reference.gather(node) : null;
+    }
+
+    static ClassNode read(byte[] data) {
+        ClassNode node = new ClassNode();
+        ClassReader reader = new ClassReader(data);
+        reader.accept(node, 0);
+        return node;
+    }
+
+    static final class Member {
+        final String name;
+        final String desc;
+        final String key;
+        final int access;
+        final String bounceOwner;
+        final String bounceName;
+        final String bounceDesc;
+
+        private Member(String name, String desc, int access, String[] bounce) {
+            this.name = name;
+            this.desc = desc;
+            this.key = name + desc;
+            this.access = access;
+            this.bounceOwner = bounce == null ? null : bounce[0];
+            this.bounceName  = bounce == null ? null : bounce[1];
+            this.bounceDesc  = bounce == null ? null : bounce[2];
+        }
+    }
+
+    private static Set<String> findLambdas(ClassNode node) {
+        Set<String> lambdas = new HashSet<>();
+        for (MethodNode mtd : node.methods) {
+            for (AbstractInsnNode asn : (Iterable<AbstractInsnNode>)() -> mtd.instructions.iterator()) {
+                if (asn instanceof InvokeDynamicInsnNode) {
+                    Handle target = getLambdaTarget((InvokeDynamicInsnNode)asn);
+                    if (target != null) {
+                        lambdas.add(target.getOwner() + '/' + target.getName() + target.getDesc());
+                    }
+                }
+            }
+        }
+        return lambdas;
+    }
+
+    private static Handle getLambdaTarget(InvokeDynamicInsnNode idn) {
+        if (LAMBDA_METAFACTORY.equals(idn.bsm)    && idn.bsmArgs != null && idn.bsmArgs.length == 3 && idn.bsmArgs[1] instanceof Handle)
+            return ((Handle)idn.bsmArgs[1]);
+        if (LAMBDA_ALTMETAFACTORY.equals(idn.bsm) && idn.bsmArgs != null && idn.bsmArgs.length == 5 && idn.bsmArgs[1] instanceof Handle)
+            return ((Handle)idn.bsmArgs[1]);
+        return null;
+    }
+
+    // Finds the method a synthetic bouncer method calls, if it is one.
+    private static MethodInsnNode findBounce(MethodNode node) {
+        if ((node.access & (Opcodes.ACC_SYNTHETIC | Opcodes.ACC_BRIDGE)) == 0 || Modifier.isStatic(node.access))
+            return null;
+
+        AbstractInsnNode start = node.instructions.getFirst();
+        if (start instanceof LabelNode && start.getNext() instanceof LineNumberNode)
+            start = start.getNext().getNext();
+
+        if (!(start instanceof VarInsnNode))
+            return null;
+
+        VarInsnNode n = (VarInsnNode)start;
+        if (n.var != 0 || n.getOpcode() != Opcodes.ALOAD)
+            return null;
+
+        AbstractInsnNode end = node.instructions.getLast();
+        if (end instanceof LabelNode)
+            end = end.getPrevious();
+
+        if (end.getOpcode() >= Opcodes.IRETURN && end.getOpcode() <= Opcodes.RETURN)
+            end = end.getPrevious();
+
+        if (!(end instanceof MethodInsnNode))
+            return null;
+
+        Type[] args = Type.getArgumentTypes(node.desc);
+        int var = 1;
+        int index = 0;
+        start = start.getNext();
+        while (start != end) {
+            if (start instanceof VarInsnNode) {
+                if (((VarInsnNode)start).var != var || index + 1 > args.length) {
+                    //Arguments are switched around, so seems like lambda!
+                    return null;
+                }
+                var += args[index++].getSize();
+            } else if (start.getOpcode() == Opcodes.INSTANCEOF || start.getOpcode() == Opcodes.CHECKCAST) {
+                //Valid!
+            } else {
+                // Anything else is invalid in a bouncer {As far as I know}, so we're most likely a lambda
+                return null;
+            }
+            start = start.getNext();
+        }
+
+        MethodInsnNode mtd = (MethodInsnNode)end;
+        if (Type.getArgumentsAndReturnSizes(node.desc) == Type.getArgumentsAndReturnSizes(mtd.desc))
+            return mtd;
+        return null;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) Forge Development LLC
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+package net.minecraftforge.mappingverifier;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A source of class files to load into a {@link MappingVerifier}, such as a jar, a directory of compiled classes, or classes that are
+ * only in memory. Nothing is ever extracted to temporary files.
+ * <p>
+ * The classes can be fetched in bulk, by listing every name up front so the loader can schedule reading all of them, or on demand by name.
+ * Fetching must be safe to call from multiple threads.
+ */
+public interface ClassProvider extends Closeable {
+    /** Where jars embed other jars, such as the libraries of a mod. */
+    String NESTED_JARS = "META-INF/jarjar/";
+
+    /**
+     * @return The internal names of every class, such as {@code java/lang/Object}, in a stable order.
+     * Multi-release and module-info classes are not included.
+     */
+    List<String> getClassNames() throws IOException;
+
+    /**
+     * @param name The internal name of a class.
+     * @return The bytecode of the class, or null if this provider doesn't have it.
+     */
+    byte[] getClassBytes(String name) throws IOException;
+
+    /**
+     * @return The paths of the jars nested in this one, under {@value #NESTED_JARS}.
+     */
+    default List<String> getNestedJars() throws IOException {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Opens a nested jar, streaming it from this one into memory.
+     * @param path One of the paths returned by {@link #getNestedJars()}.
+     */
+    default ClassProvider openNested(String path) throws IOException {
+        throw new FileNotFoundException(path);
+    }
+
+    @Override
+    default void close() throws IOException {}
+
+    /**
+     * @return A provider for the classes of a jar, a jmod, or a directory of classes, depending on what the file is.
+     */
+    static ClassProvider of(File file) throws IOException {
+        if (file.isDirectory())
+            return fromDirectory(file.toPath());
+        if (file.getName().endsWith(".jmod"))
+            return fromJmod(file);
+        return fromJar(file);
+    }
+
+    static ClassProvider fromJar(File jar) throws IOException {
+        return new ZipClassProvider(jar, "");
+    }
+
+    /**
+     * Jmods are zips with a small header, which hold their classes under {@code classes/}.
+     */
+    static ClassProvider fromJmod(File jmod) throws IOException {
+        return new ZipClassProvider(jmod, "classes/");
+    }
+
+    /**
+     * The directory is walked in parallel when the classes are listed.
+     */
+    static ClassProvider fromDirectory(Path root) {
+        return new DirectoryClassProvider(root);
+    }
+
+    /**
+     * @param classes The bytecode of each class, keyed by internal name. Listed in the map's iteration order.
+     */
+    static ClassProvider fromMemory(Map<String, byte[]> classes) {
+        return new MemoryClassProvider(classes);
+    }
+
+    /**
+     * @return True if this path, relative to the root of the classes, is a class that should be loaded.
+     */
+    static boolean isClass(String path) {
+        return path.endsWith(".class")
+            && !path.startsWith("META-INF/") // No Multi-Release support
+            && !path.equals("module-info.class");
+    }
+
+    /**
+     * @return True if this path, relative to the root of the classes, is a nested jar.
+     */
+    static boolean isNestedJar(String path) {
+        return path.startsWith(NESTED_JARS) && path.endsWith(".jar");
+    }
+}
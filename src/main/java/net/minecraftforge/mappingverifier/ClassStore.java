@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) Forge Development LLC
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+package net.minecraftforge.mappingverifier;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shares the parsed data of classes between every {@link InheratanceMap} created with it, keyed by the hash of their bytecode.
+ * This is meant for loading many versions of the same jars in one process, as most classes are the same between versions.
+ * Each map only builds its own lightweight graph of the classes on top of the shared data, and identical classes are only parsed once.
+ * <p>
+ * Names and descriptors are also shared between classes. This is safe to use from multiple threads.
+ */
+public class ClassStore {
+    private final Map<ByteBuffer, ClassData> classes = new ConcurrentHashMap<>();
+    private final Map<String, String> strings = new ConcurrentHashMap<>();
+
+    ClassData get(byte[] hash, byte[] data, boolean references) {
+        ByteBuffer key = ByteBuffer.wrap(hash);
+        ClassData ret = classes.get(key);
+        // The references are only gathered for classes that are owned, so a class first read as a library needs to be read again.
+        if (ret == null || (references && ret.references == null)) {
+            ret = new ClassData(ClassData.read(data), hash, references, this::intern);
+            classes.put(key, ret);
+        }
+        return ret;
+    }
+
+    private String intern(String value) {
+        String ret = strings.putIfAbsent(value, value);
+        return ret == null ? value : ret;
+    }
+
+    /**
+     * @return The number of distinct classes in this store.
+     */
+    public int size() {
+        return classes.size();
+    }
+}
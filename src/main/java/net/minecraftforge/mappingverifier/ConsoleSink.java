@@ -0,0 +1,19 @@
+/*
+ * Copyright (c) Forge Development LLC
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+package net.minecraftforge.mappingverifier;
+
+class ConsoleSink implements DiagnosticSink {
+    private String task = null;
+
+    @Override
+    public synchronized void accept(Diagnostic diagnostic) {
+        if (!diagnostic.getTask().equals(task)) {
+            task = diagnostic.getTask();
+            Main.LOG.warning("Task: " + task);
+        }
+        for (String line : diagnostic.getLines())
+            Main.LOG.warning("    " + line);
+    }
+}
@@ -0,0 +1,347 @@
+/*
+ * Copyright (c) Forge Development LLC
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+package net.minecraftforge.mappingverifier;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import net.minecraftforge.srgutils.IMappingFile;
+
+/**
+ * Long running verification server, which keeps parsed mappings and library graphs in memory between requests, so that
+ * each request only pays for reading the owned jar and verifying it. It listens on a loopback port, see {@link #request}
+ * for the client side.
+ * <p>
+ * The protocol is line based, each line being a keyword and a value separated by a space.
+ * The client sends any number of {@code jar}, {@code map}, {@code lib}, {@code release} and {@code task} lines, followed by {@code verify}.
+ * The server answers with a {@code diagnostic <task> <data>} for every error, sent as soon as it's found, the data being every part of the
+ * {@link Diagnostic} in base 64. Then {@code result true|false}, or a {@code fail <message>} if the request could not be run. A {@code stop} line shuts the server down,
+ * once the requests that are running are done.
+ */
+public class Daemon {
+    private static final int MAX_MAPPINGS = 16;
+    private static final int MAX_LIBRARIES = 4;
+
+    private final int port;
+    private final Map<String, CompletableFuture<IMappingFile>> mappings = lru(MAX_MAPPINGS);
+    private final Map<String, CompletableFuture<InheratanceMap>> libraries = lru(MAX_LIBRARIES);
+    private volatile ServerSocket server;
+    private volatile boolean stopped = false;
+
+    public Daemon(int port) {
+        this.port = port;
+    }
+
+    /**
+     * Serves requests until a {@code stop} request, or {@link #stop()}, then waits for the running requests to finish.
+     */
+    public void run() throws IOException {
+        ExecutorService requests = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "MappingVerifier Request");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            this.server = server;
+            Main.LOG.warning("Daemon listening on " + server.getLocalSocketAddress());
+            while (!stopped) {
+                Socket socket;
+                try {
+                    socket = server.accept();
+                } catch (SocketException e) {
+                    // Closing the socket is how stop() wakes up accept()
+                    if (stopped)
+                        break;
+                    throw e;
+                }
+                requests.execute(() -> handle(socket));
+            }
+        } finally {
+            requests.shutdown();
+            try {
+                requests.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            Main.LOG.warning("Daemon stopped");
+        }
+    }
+
+    /**
+     * Stops accepting requests, which makes {@link #run()} return once the running ones are done. Can be called from any thread.
+     */
+    public void stop() {
+        stopped = true;
+        ServerSocket server = this.server;
+        if (server != null) {
+            try {
+                server.close();
+            } catch (IOException e) {
+                Main.LOG.log(Level.WARNING, "Failed to close the daemon socket", e);
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8))) {
+            File jar = null;
+            File map = null;
+            List<File> libs = new ArrayList<>();
+            List<String> tasks = new ArrayList<>();
+            Integer release = null;
+
+            String line;
+            while ((line = in.readLine()) != null) {
+                int idx = line.indexOf(' ');
+                String key = idx == -1 ? line : line.substring(0, idx);
+                String value = idx == -1 ? null : line.substring(idx + 1);
+                switch (key) {
+                    case "jar":  jar = new File(value); break;
+                    case "map":  map = new File(value); break;
+                    case "lib":  libs.add(new File(value)); break;
+                    case "task": tasks.add(value); break;
+                    case "release": release = Integer.valueOf(value); break;
+                    case "stop":
+                        out.println("result true");
+                        out.flush();
+                        stop();
+                        return;
+                    case "verify":
+                        try {
+                            if (jar == null || map == null)
+                                throw new IllegalArgumentException("Request needs a jar and a map");
+                            verify(jar, map, libs, release, tasks, out);
+                        } catch (Exception e) {
+                            Main.LOG.log(Level.SEVERE, "Request failed", e);
+                            out.println("fail " + String.valueOf(e.getMessage()).replace('\n', ' '));
+                        }
+                        out.flush();
+                        return;
+                    default:
+                        out.println("fail Unknown request: " + key);
+                        out.flush();
+                        return;
+                }
+            }
+        } catch (IOException e) {
+            Main.LOG.log(Level.WARNING, "Failed to handle request", e);
+        }
+    }
+
+    private void verify(File jar, File map, List<File> libs, Integer release, List<String> tasks, PrintWriter out) throws IOException {
+        Main.LOG.info("Request: " + jar + " " + map);
+        MappingVerifier mv = new MappingVerifier(null, getLibraries(libs, release));
+        if (release != null)
+            mv.setRelease(release);
+        if (tasks.isEmpty())
+            mv.addDefaultTasks();
+        else
+            tasks.forEach(mv::addTask);
+
+        mv.setMap(getMappings(map));
+        mv.loadJar(jar);
+
+        // Sent as they are found, so the client sees them before the whole jar is verified.
+        mv.setSink(new DiagnosticSink() {
+            @Override
+            public void accept(Diagnostic diagnostic) {
+                out.println("diagnostic " + diagnostic.getTask() + ' ' + encode(diagnostic));
+            }
+
+            @Override
+            public void flush() {
+                out.flush();
+            }
+        });
+        mv.setRetainErrors(false);
+
+        boolean valid = mv.verify();
+        out.println("result " + valid);
+    }
+
+    private IMappingFile getMappings(File map) throws IOException {
+        return get(mappings, describe(map), () -> IMappingFile.load(map));
+    }
+
+    /*
+     * The library graph is frozen, so every request can load its jar on top of it at the same time without copying it.
+     */
+    private InheratanceMap getLibraries(Collection<File> libs, Integer release) throws IOException {
+        StringBuilder buf = new StringBuilder();
+        buf.append(release).append('\n');
+        for (File lib : libs)
+            buf.append(describe(lib)).append('\n');
+        String key = buf.toString();
+
+        return get(libraries, key, () -> {
+            MappingVerifier mv = new MappingVerifier();
+            if (release != null)
+                mv.setRelease(release);
+            for (File lib : libs)
+                mv.loadLibrary(lib);
+            return mv.getInheratance().freeze();
+        });
+    }
+
+    /*
+     * Only finding the entry is locked, so a request loading something new doesn't hold up the ones that need what's already loaded.
+     * Requests for an entry that is still loading wait for it, and one that failed to load is removed so the next request tries again.
+     */
+    private static <T> T get(Map<String, CompletableFuture<T>> cache, String key, Loader<T> loader) throws IOException {
+        CompletableFuture<T> future;
+        boolean load = false;
+        synchronized (cache) {
+            future = cache.get(key);
+            if (future == null) {
+                future = new CompletableFuture<>();
+                cache.put(key, future);
+                load = true;
+            }
+        }
+
+        if (load) {
+            try {
+                future.complete(loader.load());
+            } catch (IOException | RuntimeException | Error e) {
+                synchronized (cache) {
+                    cache.remove(key, future);
+                }
+                future.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException)cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException)cause;
+            if (cause instanceof Error)
+                throw (Error)cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Loader<T> {
+        T load() throws IOException;
+    }
+
+    private static String describe(File file) {
+        return file.getAbsolutePath() + '|' + file.length() + '|' + file.lastModified();
+    }
+
+    private static <K, V> Map<K, V> lru(int max) {
+        return new LinkedHashMap<K, V>(16, 0.75F, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > max;
+            }
+        };
+    }
+
+    /**
+     * Sends a verify request to a daemon running on this machine.
+     * @param release The Java release to read the JDK classes of, or null for the daemon's JDK.
+     * @param tasks The names of the tasks to run, or empty for the default tasks.
+     */
+    public static ResultCache.Result request(int port, File jar, File map, Collection<File> libs, Integer release, Collection<String> tasks) throws IOException {
+        return request(port, jar, map, libs, release, tasks, null);
+    }
+
+    /**
+     * @param sink Receives every error as soon as the daemon sends it, or null.
+     * @see #request(int, File, File, Collection, Integer, Collection)
+     */
+    public static ResultCache.Result request(int port, File jar, File map, Collection<File> libs, Integer release, Collection<String> tasks, DiagnosticSink sink) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            out.println("jar " + jar.getAbsolutePath());
+            out.println("map " + map.getAbsolutePath());
+            for (File lib : libs)
+                out.println("lib " + lib.getAbsolutePath());
+            if (release != null)
+                out.println("release " + release);
+            for (String task : tasks)
+                out.println("task " + task);
+            out.println("verify");
+            out.flush();
+
+            Map<String, List<Diagnostic>> diagnostics = new LinkedHashMap<>();
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith("diagnostic ")) {
+                    int idx = line.indexOf(' ', 11);
+                    String task = line.substring(11, idx);
+                    Diagnostic diagnostic = decode(task, line.substring(idx + 1));
+                    diagnostics.computeIfAbsent(task, k -> new ArrayList<>()).add(diagnostic);
+                    if (sink != null)
+                        sink.accept(diagnostic);
+                } else if (line.startsWith("result ")) {
+                    if (sink != null)
+                        sink.flush();
+                    return new ResultCache.Result(Boolean.parseBoolean(line.substring(7)), diagnostics);
+                } else if (line.startsWith("fail ")) {
+                    throw new IOException("Daemon failed: " + line.substring(5));
+                }
+            }
+            throw new IOException("Daemon closed the connection before sending a result");
+        }
+    }
+
+    // Written to memory, so it can't actually fail.
+    private static String encode(Diagnostic diagnostic) {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try {
+            DataOutputStream out = new DataOutputStream(buf);
+            diagnostic.write(out);
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return Base64.getEncoder().encodeToString(buf.toByteArray());
+    }
+
+    private static Diagnostic decode(String task, String data) throws IOException {
+        return Diagnostic.read(new DataInputStream(new ByteArrayInputStream(Base64.getDecoder().decode(data))), task);
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) Forge Development LLC
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+package net.minecraftforge.mappingverifier;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A single problem found by a verifier. The message is only formatted when it's asked for, so sinks that only need the
+ * structured parts don't pay for it.
+ * <p>
+ * {@link #getLines()} are the same lines {@link IVerifier#getErrors()} has always held. Incremental runs, shards, the result cache
+ * and the daemon store every part of a diagnostic, so what they replay is the same as what was found.
+ */
+public final class Diagnostic {
+    private final String task;
+    private final String kind;
+    private final String cls;
+    private final String member;
+    private final List<String> mapped;
+    private final String format;
+    private final String[] args;
+    private final List<String> details;
+    private String message;
+
+    private Diagnostic(String task, String kind, String cls, String member, List<String> mapped, String format, String[] args, List<String> details) {
+        this.task = task;
+        this.kind = kind;
+        this.cls = cls;
+        this.member = member;
+        this.mapped = mapped;
+        this.format = format;
+        this.args = args;
+        this.details = details;
+    }
+
+    /**
+     * @return A diagnostic that is only known by its text, such as an error line of a verifier that doesn't report diagnostics.
+     */
+    public static Diagnostic text(String task, String line) {
+        Diagnostic ret = new Diagnostic(task, null, null, null, Collections.emptyList(), null, null, Collections.emptyList());
+        ret.message = line;
+        return ret;
+    }
+
+    /** @return The name of the task that found this. */
+    public String getTask() {
+        return task;
+    }
+
+    /** @return The kind of problem, such as {@code Override} or {@code Invalid Access}. Null if it's only known by its text. */
+    public String getKind() {
+        return kind;
+    }
+
+    /** @return The obfuscated name of the class this is about, or null. */
+    public String getClassName() {
+        return cls;
+    }
+
+    /** @return The obfuscated name, and descriptor for methods, of the member this is about, or null. */
+    public String getMember() {
+        return member;
+    }
+
+    /** @return The mapped names involved in this problem. */
+    public List<String> getMapped() {
+        return mapped;
+    }
+
+    public String getMessage() {
+        if (message == null)
+            message = String.format(format, (Object[])args);
+        return message;
+    }
+
+    /** @return The lines following the message, listing what is involved. */
+    public List<String> getDetails() {
+        return details;
+    }
+
+    /** @return The message followed by the details. */
+    public List<String> getLines() {
+        if (details.isEmpty())
+            return Collections.singletonList(getMessage());
+        List<String> ret = new ArrayList<>(details.size() + 1);
+        ret.add(getMessage());
+        ret.addAll(details);
+        return ret;
+    }
+
+    /**
+     * A 64 bit hash of everything that makes up the text of this diagnostic, without formatting it.
+     * Used to collapse duplicates without holding on to every diagnostic.
+     */
+    long fingerprint() {
+        long hash = 0xcbf29ce484222325L;
+        hash = fnv(hash, task);
+        if (format == null) {
+            hash = fnv(hash, message);
+        } else {
+            hash = fnv(hash, format);
+            for (String arg : args)
+                hash = fnv(hash, arg);
+        }
+        for (String line : details)
+            hash = fnv(hash, line);
+        return hash;
+    }
+
+    /**
+     * Writes everything but the task, which is stored once for all of its diagnostics. The message is stored unformatted,
+     * so the diagnostic that is read back has the same {@link #fingerprint()}.
+     */
+    void write(DataOutputStream out) throws IOException {
+        BinaryIO.writeNullable(out, kind);
+        BinaryIO.writeNullable(out, cls);
+        BinaryIO.writeNullable(out, member);
+        BinaryIO.writeStrings(out, mapped);
+        BinaryIO.writeNullable(out, format);
+        if (format == null) {
+            BinaryIO.writeString(out, message);
+        } else {
+            out.writeInt(args.length);
+            for (String arg : args)
+                BinaryIO.writeNullable(out, arg);
+        }
+        BinaryIO.writeStrings(out, details);
+    }
+
+    static Diagnostic read(DataInputStream in, String task) throws IOException {
+        String kind = BinaryIO.readNullable(in);
+        String cls = BinaryIO.readNullable(in);
+        String member = BinaryIO.readNullable(in);
+        List<String> mapped = BinaryIO.readStrings(in);
+        String format = BinaryIO.readNullable(in);
+        String message = null;
+        String[] args = null;
+        if (format == null) {
+            message = BinaryIO.readString(in);
+        } else {
+            args = new String[in.readInt()];
+            for (int x = 0; x < args.length; x++)
+                args[x] = BinaryIO.readNullable(in);
+        }
+        Diagnostic ret = new Diagnostic(task, kind, cls, member, mapped, format, args, BinaryIO.readStrings(in));
+        ret.message = message;
+        return ret;
+    }
+
+    private static long fnv(long hash, String value) {
+        if (value == null)
+            return (hash ^ 0xFF) * 0x100000001b3L;
+        for (int x = 0; x < value.length(); x++)
+            hash = (hash ^ value.charAt(x)) * 0x100000001b3L;
+        return (hash ^ 0xFE) * 0x100000001b3L;
+    }
+
+    @Override
+    public String toString() {
+        return task + ": " + String.join("\n", getLines());
+    }
+
+    public static class Builder {
+        private final Consumer<Diagnostic> target;
+        private final String task;
+        private final String kind;
+        private String cls;
+        private String member;
+        private List<String> mapped = Collections.emptyList();
+        private List<String> details = Collections.emptyList();
+
+        Builder(Consumer<Diagnostic> target, String task, String kind) {
+            this.target = target;
+            this.task = task;
+            this.kind = kind;
+        }
+
+        public Builder at(String cls) {
+            this.cls = cls;
+            return this;
+        }
+
+        public Builder member(String name) {
+            this.member = name;
+            return this;
+        }
+
+        public Builder member(String name, String desc) {
+            this.member = name + ' ' + desc;
+            return this;
+        }
+
+        public Builder mapped(String... names) {
+            this.mapped = Arrays.asList(names);
+            return this;
+        }
+
+        public Builder mapped(List<String> names) {
+            this.mapped = names;
+            return this;
+        }
+
+        public Builder detail(String line) {
+            if (details.isEmpty())
+                details = new ArrayList<>();
+            details.add(line);
+            return this;
+        }
+
+        /**
+         * Builds the diagnostic and reports it.
+         * @param format The message, formatted with {@link String#format} when it is first needed.
+         */
+        public void report(String format, String... args) {
+            target.accept(new Diagnostic(task, kind, cls, member, mapped, format, args, details));
+        }
+    }
+}
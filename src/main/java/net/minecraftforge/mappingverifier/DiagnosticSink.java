@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) Forge Development LLC
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+package net.minecraftforge.mappingverifier;
+
+import java.io.Writer;
+
+/**
+ * Receives every {@link Diagnostic} as soon as it's found, see {@link MappingVerifier#setSink(DiagnosticSink)}.
+ * Which is also usable as a callback, as only {@link #accept(Diagnostic)} needs implementing.
+ */
+@FunctionalInterface
+public interface DiagnosticSink {
+    void accept(Diagnostic diagnostic);
+
+    /**
+     * Called whenever a class is done, and once everything is.
+     */
+    default void flush() {}
+
+    /**
+     * Prints every line of the diagnostics to our log, under a header with the task's name whenever it changes.
+     */
+    static DiagnosticSink console() {
+        return new ConsoleSink();
+    }
+
+    /**
+     * Writes every diagnostic as a JSON object on its own line. The writer is not closed.
+     */
+    static DiagnosticSink jsonLines(Writer out) {
+        return new JsonLinesSink(out);
+    }
+
+    /**
+     * @return A sink that sends everything to both of these.
+     */
+    static DiagnosticSink both(DiagnosticSink first, DiagnosticSink second) {
+        return new DiagnosticSink() {
+            @Override
+            public void accept(Diagnostic diagnostic) {
+                first.accept(diagnostic);
+                second.accept(diagnostic);
+            }
+
+            @Override
+            public void flush() {
+                first.flush();
+                second.flush();
+            }
+        };
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) Forge Development LLC
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+package net.minecraftforge.mappingverifier;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Stream;
+
+/**
+ * Classes in a directory, such as a compiler's output. The directory tree is walked in parallel, each sub directory being listed
+ * by its own fork join task, and the classes are listed sorted by name so the order doesn't depend on the filesystem.
+ */
+class DirectoryClassProvider implements ClassProvider {
+    private final Path root;
+
+    DirectoryClassProvider(Path root) {
+        this.root = root;
+    }
+
+    @Override
+    public List<String> getClassNames() throws IOException {
+        List<String> ret;
+        try {
+            ret = ForkJoinPool.commonPool().invoke(new Walk(root, ""));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        Collections.sort(ret);
+        return ret;
+    }
+
+    @Override
+    public byte[] getClassBytes(String name) throws IOException {
+        try {
+            return Files.readAllBytes(root.resolve(name + ".class"));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public List<String> getNestedJars() throws IOException {
+        List<String> ret = new ArrayList<>();
+        Path dir = root.resolve(NESTED_JARS);
+        if (!Files.isDirectory(dir))
+            return ret;
+
+        try (Stream<Path> stream = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>)stream::iterator) {
+                String name = root.relativize(path).toString().replace('\\', '/');
+                if (Files.isRegularFile(path) && ClassProvider.isNestedJar(name))
+                    ret.add(name);
+            }
+        }
+        Collections.sort(ret);
+        return ret;
+    }
+
+    @Override
+    public ClassProvider openNested(String path) throws IOException {
+        return ClassProvider.fromJar(root.resolve(path).toFile());
+    }
+
+    private static class Walk extends RecursiveTask<List<String>> {
+        private static final long serialVersionUID = 1L;
+        private final Path dir;
+        private final String prefix;
+
+        private Walk(Path dir, String prefix) {
+            this.dir = dir;
+            this.prefix = prefix;
+        }
+
+        @Override
+        protected List<String> compute() {
+            List<String> ret = new ArrayList<>();
+            List<Walk> children = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path path : stream) {
+                    String name = prefix + path.getFileName().toString();
+                    if (Files.isDirectory(path)) {
+                        Walk child = new Walk(path, name + '/');
+                        child.fork();
+                        children.add(child);
+                    } else if (ClassProvider.isClass(name)) {
+                        ret.add(name.substring(0, name.length() - 6));
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            for (Walk child : children)
+                ret.addAll(child.join());
+            return ret;
+        }
+    }
+}
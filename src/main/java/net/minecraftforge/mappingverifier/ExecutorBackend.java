@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) Forge Development LLC
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+package net.minecraftforge.mappingverifier;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Decides where {@link MappingVerifier} runs the work that can be done concurrently. Reading jars is mostly blocking I/O, so it is
+ * split from the CPU bound work, like verifying a batch of mappings in parallel.
+ */
+public enum ExecutorBackend {
+    /** Everything is run on the calling thread. */
+    SERIAL(false, false),
+    /** Everything is run on the common {@link ForkJoinPool}. */
+    FORKJOIN(false, false),
+    /** Reading is done on a virtual thread per task, requires Java 21 or newer. */
+    VIRTUAL(true, true),
+    /** Same as {@link #VIRTUAL} when virtual threads are supported, else the same as {@link #FORKJOIN}. */
+    AUTO(true, false);
+
+    private final boolean virtual;
+    private final boolean required;
+
+    private ExecutorBackend(boolean virtual, boolean required) {
+        this.virtual = virtual;
+        this.required = required;
+    }
+
+    /**
+     * @return The executor for blocking work, or null if it should be run on the calling thread.
+     */
+    public ExecutorService getIO() {
+        if (this == SERIAL)
+            return null;
+        if (virtual) {
+            ExecutorService ret = VirtualThreads.EXECUTOR;
+            if (ret != null)
+                return ret;
+            if (required)
+                throw new UnsupportedOperationException("Virtual threads require Java 21 or newer, running on " + System.getProperty("java.version"));
+        }
+        return ForkJoinPool.commonPool();
+    }
+
+    /**
+     * @return The executor for CPU bound work, or null if it should be run on the calling thread.
+     */
+    public ExecutorService getCPU() {
+        return this == SERIAL ? null : ForkJoinPool.commonPool();
+    }
+
+    public static boolean hasVirtualThreads() {
+        return VirtualThreads.EXECUTOR != null;
+    }
+}
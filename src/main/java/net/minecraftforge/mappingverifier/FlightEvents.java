@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) Forge Development LLC
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+package net.minecraftforge.mappingverifier;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * JDK Flight Recorder events for loading, resolving and verifying, so a recording shows which jar, class and task the time went to.
+ * <p>
+ * Flight Recorder is not used on this version of Java, so every event does nothing.
+ * This class is replaced in the Java 21 section of the multi-release jar.
+ */
+final class FlightEvents {
+    private static final Span NONE = count -> {};
+
+    private FlightEvents() {}
+
+    /**
+     * Starts a recording of the default settings and these events, written to the file when the JVM exits.
+     * @return False if Flight Recorder is not available.
+     */
+    static boolean record(File file) throws IOException {
+        return false;
+    }
+
+    /** Reading every class of a jar, the count is the classes read. */
+    static Span loadJar(String jar, boolean owned) {
+        return NONE;
+    }
+
+    /** Parsing a single class, the count is its fields and methods. */
+    static Span parseClass(int size, boolean owned) {
+        return NONE;
+    }
+
+    /** Resolving the inheritance map, the count is its owned classes. */
+    static Span resolve() {
+        return NONE;
+    }
+
+    /** A phase of a task that isn't per class, such as begin, end or process. The count is the errors reported so far. */
+    static Span task(String task, String phase) {
+        return NONE;
+    }
+
+    /** Visiting a single owned class with every task, the count is its references. */
+    static Span verifyClass(String cls, int tasks) {
+        return NONE;
+    }
+
+    /**
+     * A running event, committed once the work it covers is done.
+     */
+    @FunctionalInterface
+    interface Span {
+        void end(long count);
+
+        /**
+         * Ends an event started before the name of its class was known.
+         */
+        default void end(String cls, long count) {
+            end(count);
+        }
+    }
+}
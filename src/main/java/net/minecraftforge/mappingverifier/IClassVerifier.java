@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) Forge Development LLC
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+package net.minecraftforge.mappingverifier;
+
+import java.util.List;
+
+import net.minecraftforge.mappingverifier.InheratanceMap.Class;
+import net.minecraftforge.mappingverifier.InheratanceMap.Field;
+import net.minecraftforge.mappingverifier.InheratanceMap.Method;
+
+/**
+ * A verifier that is driven by {@link MappingVerifier#visit(java.util.Collection)}, which walks every owned class once
+ * and hands each class, member and reference to every enabled verifier, instead of each verifier walking them itself.
+ * <p>
+ * For each owned class the order of calls is {@link #visitClass(Class)}, then every field, every method and every
+ * reference, and lastly {@link #visitEnd(Class)}.
+ */
+public interface IClassVerifier extends IVerifier {
+    /**
+     * Called once, after the inheritance map is resolved, before any class is visited.
+     */
+    default void begin() {}
+
+    default void visitClass(Class cls) {}
+
+    default void visitField(Class cls, Field field) {}
+
+    default void visitMethod(Class cls, Method method) {}
+
+    default void visitReference(Class cls, Reference ref) {}
+
+    default void visitEnd(Class cls) {}
+
+    /**
+     * If this returns true, the errors reported between {@link #visitClass(Class)} and {@link #visitEnd(Class)} may only
+     * depend on that class, its parents and the things it references, and must not be needed by {@link #end()}.
+     * Which allows incremental runs to skip classes that are unaffected by a change, replaying their previous errors using
+     * {@link #restore(Class, List)} instead. Classes that report the same error as another class still report it, the duplicate is left out later.
+     */
+    default boolean isIncremental() {
+        return false;
+    }
+
+    /**
+     * Called instead of visiting a class whose errors were reused from a previous run.
+     * @param diagnostics The ones that were not already reported, and are within the error budget.
+     */
+    default void restore(Class cls, List<Diagnostic> diagnostics) {
+        for (Diagnostic diagnostic : diagnostics)
+            getErrors().addAll(diagnostic.getLines());
+    }
+
+    /**
+     * Called once every owned class has been visited.
+     * @return True if everything went fine, false if something was logged to errors.
+     */
+    boolean end();
+}
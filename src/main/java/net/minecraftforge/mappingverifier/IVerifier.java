@@ -4,6 +4,7 @@
  */
 package net.minecraftforge.mappingverifier;
 
+import java.util.AbstractList;
 import java.util.List;
 
 public interface IVerifier {
@@ -13,6 +14,25 @@ public interface IVerifier {
 
     public List<String> getErrors();
 
+    /**
+     * @return The errors as they were reported, each one being one or more of the lines of {@link #getErrors()}.
+     * Verifiers that only fill {@link #getErrors()} have a diagnostic, only known by its text, for every line.
+     */
+    default List<Diagnostic> getDiagnostics() {
+        List<String> errors = getErrors();
+        return new AbstractList<Diagnostic>() {
+            @Override
+            public Diagnostic get(int index) {
+                return Diagnostic.text(getName(), errors.get(index));
+            }
+
+            @Override
+            public int size() {
+                return errors.size();
+            }
+        };
+    }
+
     /**
      * @return True if everything went fine, false if something was logged to errors.
      */
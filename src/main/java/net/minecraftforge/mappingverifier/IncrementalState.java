@@ -0,0 +1,407 @@
+/*
+ * Copyright (c) Forge Development LLC
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+package net.minecraftforge.mappingverifier;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import org.objectweb.asm.Type;
+
+import net.minecraftforge.mappingverifier.InheratanceMap.Class;
+import net.minecraftforge.mappingverifier.InheratanceMap.Field;
+import net.minecraftforge.mappingverifier.InheratanceMap.Method;
+import net.minecraftforge.srgutils.IMappingFile;
+import net.minecraftforge.srgutils.IMappingFile.IClass;
+import net.minecraftforge.srgutils.IMappingFile.IField;
+import net.minecraftforge.srgutils.IMappingFile.IMethod;
+
+/**
+ * The state of a previous run, saved to a directory so that the next run with a slightly different mapping only has to
+ * re-verify the classes that the change could affect.
+ * <p>
+ * It holds the inheritance map, which includes every class's references, the mapping that was verified, the hash of every
+ * class that was read and the errors each {@link IClassVerifier#isIncremental() incremental} verifier reported for each class.
+ * Override groups are rebuilt by resolving the saved map, which is much cheaper than reading the jars again.
+ */
+public class IncrementalState {
+    private static final int FORMAT_VERSION = 2;
+    private static final String INPUTS = "inputs.txt";
+    private static final String GRAPH = "graph.bin";
+    private static final String MAPPING = "mapping.tsrg";
+    private static final String RESULTS = "results.bin";
+    private static final String HASHES = "hashes.bin";
+
+    private final Path dir;
+    private IMappingFile mapping = null;
+    private Map<String, Map<String, List<Diagnostic>>> results = Collections.emptyMap();
+    private Map<String, byte[]> hashes = null;
+    private final Map<String, Map<String, List<Diagnostic>>> newResults = new TreeMap<>();
+    private Set<Class> affected = null;
+
+    public IncrementalState(File dir) {
+        this.dir = dir.toPath();
+    }
+
+    /**
+     * Loads the previous state.
+     * <p>
+     * If it was built from the same inputs, the saved inheritance map is returned. Otherwise, such as when verifying a new
+     * version of the jar against the state of the previous one, the inputs need to be loaded again. Then the hash of every
+     * class is compared to the saved ones, and only changed classes and the ones that depend on them are verified again.
+     *
+     * @return The saved inheritance map, or null if the inputs need to be loaded.
+     */
+    public InheratanceMap load(String inputs) throws IOException {
+        Path inputsFile = dir.resolve(INPUTS);
+        if (!Files.exists(inputsFile))
+            return null;
+
+        String previous = new String(Files.readAllBytes(inputsFile), StandardCharsets.UTF_8);
+        boolean same = previous.equals(inputs);
+
+        try {
+            InheratanceMap inh = null;
+            if (same) {
+                try (InputStream in = Files.newInputStream(dir.resolve(GRAPH))) {
+                    inh = InheratanceMap.read(in);
+                }
+            } else {
+                if (!previous.startsWith(Main.VERSION + '\n')) {
+                    Main.LOG.info("Incremental state was built by a different version, ignoring it");
+                    return null;
+                }
+                Main.LOG.info("Incremental state was built from different inputs, only verifying changed classes");
+                try (InputStream in = Files.newInputStream(dir.resolve(HASHES))) {
+                    this.hashes = readHashes(in);
+                }
+            }
+            this.mapping = IMappingFile.load(dir.resolve(MAPPING).toFile());
+            try (InputStream in = Files.newInputStream(dir.resolve(RESULTS))) {
+                this.results = readResults(in);
+            }
+            return inh;
+        } catch (IOException e) {
+            Main.LOG.warning("Failed to read incremental state, doing a full run: " + e.getMessage());
+            this.mapping = null;
+            this.hashes = null;
+            this.results = Collections.emptyMap();
+            return null;
+        }
+    }
+
+    /**
+     * Finds every owned class whose results could differ from the saved ones under the new mapping.
+     * Must be called after the inheritance map is resolved, and before the classes are visited.
+     */
+    public void prepare(InheratanceMap inh, IMappingFile map) {
+        this.newResults.clear();
+        if (this.mapping == null) {
+            this.affected = null;
+            return;
+        }
+
+        Set<String> changed = findChanged(this.mapping, map);
+        if (this.hashes != null)
+            changed.addAll(findChanged(this.hashes, inh));
+
+        Set<Class> ret = new HashSet<>();
+        for (Class cls : inh.getOwned()) {
+            if (dependsOn(inh, cls, changed))
+                ret.add(cls);
+        }
+
+        Main.LOG.info("Incremental: " + changed.size() + " changed classes, " + ret.size() + "/" + inh.getOwned().size() + " affected");
+        this.affected = ret;
+    }
+
+    /**
+     * @return Everything the task reported for this class in the previous run, duplicates included, or null if it needs to be visited again.
+     */
+    public List<Diagnostic> getDiagnostics(IClassVerifier task, Class cls) {
+        if (this.affected == null || this.affected.contains(cls) || !task.isIncremental())
+            return null;
+
+        Map<String, List<Diagnostic>> diagnostics = this.results.get(task.getName());
+        if (diagnostics == null)
+            return null;
+
+        return diagnostics.getOrDefault(cls.name, Collections.emptyList());
+    }
+
+    /**
+     * @param diagnostics Everything the task reported for this class, including the ones another class already reported.
+     */
+    public void record(IClassVerifier task, Class cls, List<Diagnostic> diagnostics) {
+        Map<String, List<Diagnostic>> diags = this.newResults.computeIfAbsent(task.getName(), k -> new TreeMap<>());
+        if (!diagnostics.isEmpty())
+            diags.put(cls.name, new ArrayList<>(diagnostics));
+    }
+
+    public void save(String inputs, InheratanceMap inh, IMappingFile map) throws IOException {
+        Files.createDirectories(dir);
+        // Remove the inputs first, so a half written state is never trusted
+        Files.deleteIfExists(dir.resolve(INPUTS));
+
+        try (OutputStream out = Files.newOutputStream(dir.resolve(GRAPH))) {
+            inh.write(out);
+        }
+
+        map.write(dir.resolve(MAPPING), IMappingFile.Format.TSRG2, false);
+
+        try (OutputStream out = Files.newOutputStream(dir.resolve(RESULTS))) {
+            writeResults(out, newResults);
+        }
+
+        try (OutputStream out = Files.newOutputStream(dir.resolve(HASHES))) {
+            writeHashes(out, inh);
+        }
+
+        Path tmp = dir.resolve(INPUTS + ".tmp");
+        Files.write(tmp, inputs.getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, dir.resolve(INPUTS), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /*
+     * Every obfed class whose entry in the mapping is different, including any of its fields or methods.
+     */
+    private static Set<String> findChanged(IMappingFile old, IMappingFile map) {
+        Set<String> ret = new HashSet<>();
+        for (IClass cls : map.getClasses()) {
+            if (!isSame(old.getClass(cls.getOriginal()), cls))
+                ret.add(cls.getOriginal());
+        }
+        for (IClass cls : old.getClasses()) {
+            if (map.getClass(cls.getOriginal()) == null)
+                ret.add(cls.getOriginal());
+        }
+        return ret;
+    }
+
+    /*
+     * Every class whose bytecode is different, was added or was removed. The hierarchy is part of the bytecode,
+     * so this also covers any class whose direct parents changed.
+     */
+    private static Set<String> findChanged(Map<String, byte[]> old, InheratanceMap inh) {
+        Set<String> ret = new HashSet<>();
+        Set<String> seen = new HashSet<>();
+        for (Class cls : inh.getClasses()) {
+            byte[] hash = cls.getHash();
+            if (hash == null)
+                continue;
+            seen.add(cls.name);
+            if (!Arrays.equals(hash, old.get(cls.name)))
+                ret.add(cls.name);
+        }
+        for (String name : old.keySet()) {
+            if (!seen.contains(name))
+                ret.add(name);
+        }
+        return ret;
+    }
+
+    private static boolean isSame(IClass old, IClass cls) {
+        if (old == null || !old.getMapped().equals(cls.getMapped()))
+            return false;
+        if (old.getFields().size() != cls.getFields().size() || old.getMethods().size() != cls.getMethods().size())
+            return false;
+
+        for (IField field : cls.getFields()) {
+            IField ofield = old.getField(field.getOriginal());
+            if (ofield == null || !ofield.getMapped().equals(field.getMapped()))
+                return false;
+        }
+
+        for (IMethod mtd : cls.getMethods()) {
+            IMethod omtd = old.getMethod(mtd.getOriginal(), mtd.getDescriptor());
+            if (omtd == null || !omtd.getMapped().equals(mtd.getMapped()))
+                return false;
+        }
+
+        return true;
+    }
+
+    /*
+     * The results of a class depend on the mapping of itself, its parents, the descriptors of its members, the
+     * owners of the things it references, where those are inherited from, and the descriptors of those references.
+     */
+    private static boolean dependsOn(InheratanceMap inh, Class cls, Set<String> changed) {
+        if (changed.isEmpty())
+            return false;
+
+        if (changed.contains(cls.name) || anyChanged(cls.getStack(), changed))
+            return true;
+
+        for (Field field : cls.getFields().values()) {
+            if (descChanged(field.desc, changed))
+                return true;
+        }
+
+        for (Method mtd : cls.getMethods().values()) {
+            if (descChanged(mtd.desc, changed))
+                return true;
+        }
+
+        for (Reference ref : cls.getReferences()) {
+            String owner = ref.owner.charAt(0) == '[' ? elementName(ref.owner) : ref.owner;
+            if (owner == null)
+                continue;
+            if (changed.contains(owner))
+                return true;
+            Class ocls = inh.findClass(owner);
+            if (ocls != null && anyChanged(ocls.getStack(), changed))
+                return true;
+            if (ref.desc != null && descChanged(ref.desc, changed))
+                return true;
+        }
+
+        return false;
+    }
+
+    private static boolean anyChanged(Collection<Class> classes, Set<String> changed) {
+        for (Class cls : classes) {
+            if (changed.contains(cls.name))
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean descChanged(String desc, Set<String> changed) {
+        int idx = desc.indexOf('L');
+        while (idx != -1) {
+            int end = desc.indexOf(';', idx);
+            if (changed.contains(desc.substring(idx + 1, end)))
+                return true;
+            idx = desc.indexOf('L', end);
+        }
+        return false;
+    }
+
+    private static String elementName(String desc) {
+        Type type = Type.getType(desc).getElementType();
+        return type.getSort() == Type.OBJECT ? type.getInternalName() : null;
+    }
+
+    private static void writeResults(OutputStream stream, Map<String, Map<String, List<Diagnostic>>> results) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(results.size());
+        for (Entry<String, Map<String, List<Diagnostic>>> task : results.entrySet()) {
+            out.writeUTF(task.getKey());
+            out.writeInt(task.getValue().size());
+            for (Entry<String, List<Diagnostic>> cls : task.getValue().entrySet()) {
+                out.writeUTF(cls.getKey());
+                BinaryIO.writeDiagnostics(out, cls.getValue());
+            }
+        }
+        out.flush();
+    }
+
+    private static Map<String, Map<String, List<Diagnostic>>> readResults(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        int version = in.readInt();
+        if (version != FORMAT_VERSION)
+            throw new IOException("Unsupported results version: " + version);
+
+        Map<String, Map<String, List<Diagnostic>>> ret = new HashMap<>();
+        for (int x = in.readInt(); x > 0; x--) {
+            String name = in.readUTF();
+            Map<String, List<Diagnostic>> task = ret.computeIfAbsent(name, k -> new HashMap<>());
+            for (int y = in.readInt(); y > 0; y--) {
+                String cls = in.readUTF();
+                task.put(cls, BinaryIO.readDiagnostics(in, name));
+            }
+        }
+        return ret;
+    }
+
+    private static void writeHashes(OutputStream stream, InheratanceMap inh) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+        List<Class> read = new ArrayList<>();
+        for (Class cls : inh.getClasses()) {
+            if (cls.wasRead() && cls.getHash() != null)
+                read.add(cls);
+        }
+
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(read.size());
+        for (Class cls : read) {
+            byte[] hash = cls.getHash();
+            out.writeUTF(cls.name);
+            out.writeByte(hash.length);
+            out.write(hash);
+        }
+        out.flush();
+    }
+
+    private static Map<String, byte[]> readHashes(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        int version = in.readInt();
+        if (version != FORMAT_VERSION)
+            throw new IOException("Unsupported hashes version: " + version);
+
+        Map<String, byte[]> ret = new HashMap<>();
+        for (int x = in.readInt(); x > 0; x--) {
+            String name = in.readUTF();
+            byte[] hash = new byte[in.readUnsignedByte()];
+            in.readFully(hash);
+            ret.put(name, hash);
+        }
+        return ret;
+    }
+
+    /**
+     * Builds a description of the files and settings an inheritance map was built from, so that a saved one is only reused if none of them changed.
+     */
+    public static String describeInputs(File jar, Collection<File> libs, String settings) throws IOException {
+        StringBuilder buf = new StringBuilder();
+        buf.append(Main.VERSION).append('\n');
+        buf.append(settings);
+        describe(buf, "Jar", jar);
+        for (File lib : libs)
+            describe(buf, "Lib", lib);
+        return buf.toString();
+    }
+
+    private static void describe(StringBuilder buf, String type, File file) throws IOException {
+        File abs = file.getAbsoluteFile();
+        if (!abs.isDirectory()) {
+            buf.append(type).append(": ").append(abs).append(' ').append(abs.length()).append(' ').append(abs.lastModified()).append('\n');
+            return;
+        }
+
+        // A directory's own timestamp doesn't change when a nested file does, so use the newest of its files.
+        long count = 0, length = 0, modified = 0;
+        try (Stream<Path> stream = Files.walk(abs.toPath())) {
+            for (Path path : (Iterable<Path>)stream.filter(Files::isRegularFile)::iterator) {
+                count++;
+                length += Files.size(path);
+                modified = Math.max(modified, Files.getLastModifiedTime(path).toMillis());
+            }
+        }
+        buf.append(type).append(": ").append(abs).append(' ').append(count).append(' ').append(length).append(' ').append(modified).append('\n');
+    }
+}
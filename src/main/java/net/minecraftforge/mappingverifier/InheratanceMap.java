@@ -4,15 +4,24 @@
  */
 package net.minecraftforge.mappingverifier;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Modifier;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
@@ -20,25 +29,26 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
-import org.objectweb.asm.ClassReader;
-import org.objectweb.asm.Handle;
 import org.objectweb.asm.Opcodes;
-import org.objectweb.asm.Type;
-import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.ClassNode;
-import org.objectweb.asm.tree.FieldNode;
-import org.objectweb.asm.tree.InvokeDynamicInsnNode;
-import org.objectweb.asm.tree.LabelNode;
-import org.objectweb.asm.tree.LineNumberNode;
-import org.objectweb.asm.tree.MethodInsnNode;
-import org.objectweb.asm.tree.MethodNode;
-import org.objectweb.asm.tree.VarInsnNode;
 
 public class InheratanceMap {
-    private static final Handle LAMBDA_METAFACTORY = new Handle(Opcodes.H_INVOKESTATIC, "java/lang/invoke/LambdaMetafactory", "metafactory",       "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;Ljava/lang/invoke/MethodType;Ljava/lang/invoke/MethodHandle;Ljava/lang/invoke/MethodType;)Ljava/lang/invoke/CallSite;", false);
-    private static final Handle LAMBDA_ALTMETAFACTORY = new Handle(Opcodes.H_INVOKESTATIC, "java/lang/invoke/LambdaMetafactory", "altMetafactory", "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;[Ljava/lang/Object;)Ljava/lang/invoke/CallSite;", false);
-
+    private static final int FORMAT_VERSION = 2;
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Every JVM is required to support SHA-1", e);
+        }
+    });
+
+    private final ClassStore store;
+    private final InheratanceMap base;
+    private JdkClasses jdk = null;
+    private boolean hashing = false;
+    private boolean frozen = false;
     private Map<String, Class> classes = new HashMap<>();
     private Map<String, ClassNode> nodes = new HashMap<>();
     @Deprecated // remove building Bounced -> Bouncer list
@@ -47,32 +57,154 @@ public class InheratanceMap {
     private Map<String, Set<Method>> toResolveBouncers = new HashMap<>();
     private Set<Class> owned = new TreeSet<>();
     private Set<Class> ownedView = Collections.unmodifiableSet(owned);
+    // Overrides of the base map's methods found by this map's classes, such as a library method implementing an owned interface.
+    private Map<Method, Set<Method>> linked = new HashMap<>();
+
+    public InheratanceMap() {
+        this(null);
+    }
+
+    /**
+     * @param store Where to share the data of the classes that are read with other maps, or null to not share it.
+     * Class nodes are not kept when using a store, so {@link #getNode(String)} will not return anything.
+     */
+    public InheratanceMap(ClassStore store) {
+        this(store, null);
+    }
+
+    /**
+     * Creates a map on top of a frozen one, usually holding the libraries, which can be shared by any number of maps at the same time.
+     * The classes of the base map are found by this map without being copied, and are never modified by it.
+     * So a class read into this map does not change how the base map's classes were resolved, and a class that the base map
+     * already read is read into a new class of this map, which only this map's classes see. Use {@link #getRoots(Method)} to
+     * get the roots of the base map's methods including what this map linked to them.
+     *
+     * @param store Where to share the data of the classes that are read with other maps, or null to not share it.
+     * @param base A map that was {@link #freeze() frozen}.
+     */
+    public InheratanceMap(ClassStore store, InheratanceMap base) {
+        if (base != null && !base.frozen)
+            throw new IllegalArgumentException("The base map must be frozen");
+        this.store = store;
+        this.base = base;
+        if (base != null) {
+            this.jdk = base.jdk;
+            this.owned.addAll(base.owned);
+        }
+    }
+
+    /**
+     * Sets where the JDK classes referenced by the loaded classes are read from, defaults to the running JDK.
+     */
+    public void setJdk(JdkClasses jdk) {
+        this.jdk = jdk;
+    }
+
+    public JdkClasses getJdk() {
+        if (jdk == null)
+            jdk = JdkClasses.runtime();
+        return jdk;
+    }
+
+    /**
+     * Sets if the hash of every class read is computed, see {@link Class#getHash()}. Only needed for incremental verification,
+     * so it's off by default. Classes are always hashed when using a {@link ClassStore}, as it's keyed by them.
+     */
+    public void setHashing(boolean hashing) {
+        this.hashing = hashing;
+    }
 
     public void processClass(InputStream data, boolean owned) throws IOException {
-        ClassNode node = new ClassNode();
-        ClassReader reader = new ClassReader(data);
-        reader.accept(node, 0);
+        processClass(readAll(data), owned);
+    }
 
-        Class cls = getClass(node.name);
-        cls.parent = getClass(node.superName);
+    public void processClass(byte[] data, boolean owned) {
+        processClass(parse(data, owned));
+    }
+
+    /**
+     * Parses a class without modifying this map, so it can be called from multiple threads.
+     * The result still has to be added using {@link #processClass(Parsed)}.
+     */
+    Parsed parse(byte[] data, boolean owned) {
+        FlightEvents.Span event = FlightEvents.parseClass(data.length, owned);
+        byte[] hash = store != null || hashing ? hash(data) : null;
+        Parsed ret;
+        if (store != null) {
+            ret = new Parsed(store.get(hash, data, owned), null, owned);
+        } else {
+            ClassNode node = ClassData.read(data);
+            ret = new Parsed(new ClassData(node, hash, owned, UnaryOperator.identity()), owned ? node : null, owned);
+        }
+        event.end(ret.data.name, ret.data.fields.length + ret.data.methods.length);
+        return ret;
+    }
+
+    void processClass(Parsed parsed) {
+        if (frozen)
+            throw new IllegalStateException("Can not add classes to a frozen map");
+        ClassData data = parsed.data;
+        boolean owned = parsed.owned;
+        Class cls = classes.get(data.name);
+        if (cls == null) {
+            // Never the base map's class, even if it read this one already, as that's shared and frozen.
+            cls = new Class(data.name);
+            classes.put(cls.name, cls);
+            this.owned.remove(cls);
+        }
+        cls.hash = data.hash;
+        cls.parent = getClass(data.parent);
         cls.wasRead = true;
         cls.owned = owned;
-        cls.access = node.access;
+        cls.access = data.access;
 
         if (owned)
             this.owned.add(cls);
 
-        for (String intf : node.interfaces)
+        for (String intf : data.interfaces)
             cls.interfaces.add(getClass(intf));
 
-        for (FieldNode n : node.fields)
-            cls.fields.put(n.name, new Field(cls, n));
+        for (ClassData.Member n : data.fields)
+            cls.fields.put(n.name, new Field(cls, n.name, n.desc, n.access));
+
+        for (ClassData.Member n : data.methods)
+            cls.methods.put(n.key, new Method(cls, n.name, n.desc, n.access, n.bounceOwner, n.bounceName, n.bounceDesc));
+
+        link(cls);
+
+        if (owned)
+            cls.references = data.references;
+        if (parsed.node != null)
+            this.nodes.put(parsed.node.name, parsed.node);
+    }
 
-        //Gather Lambda methods so we can skip them in bouncers?
-        Set<String> lambdas = findLambdas(node);
-        for (MethodNode n : node.methods)
-            cls.methods.put(n.name + n.desc, new Method(cls, n, lambdas.contains(node.name + '/' + n.name + n.desc)));
+    static byte[] hash(byte[] data) {
+        return DIGEST.get().digest(data);
+    }
 
+    static byte[] readAll(InputStream data) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        byte[] tmp = new byte[8192];
+        int len;
+        while ((len = data.read(tmp)) != -1)
+            buf.write(tmp, 0, len);
+        return buf.toByteArray();
+    }
+
+    static final class Parsed {
+        private final ClassData data;
+        private final ClassNode node;
+        private final boolean owned;
+
+        private Parsed(ClassData data, ClassNode node, boolean owned) {
+            this.data = data;
+            this.node = node;
+            this.owned = owned;
+        }
+    }
+
+    // Attaches bouncer methods to the methods they bounce to, now that this class has been read.
+    private void link(Class cls) {
         for (Method m : cls.methods.values()) {
             if (m.isBouncer()) {
                 if (cls.name.equals(m.bounce.owner)) {
@@ -80,8 +212,9 @@ public class InheratanceMap {
                     if (target != null)
                         target.bouncers.add(m);
                 } else if (cls.getParent() != null && cls.getParent().name.equals(m.bounce.owner)) {
-                    if (classes.containsKey(m.bounce.owner)) {
-                        addBouncer(classes.get(m.bounce.owner), m);
+                    Class owner = findClass(m.bounce.owner);
+                    if (owner != null) {
+                        addBouncer(owner, m);
                     } else {
                         bouncers.computeIfAbsent(m.bounce.owner, (name) -> new HashSet<>()).add(m);
                     }
@@ -93,42 +226,146 @@ public class InheratanceMap {
             addBouncer(cls, m);
         }
         bouncers.remove(cls.name);
+    }
 
-        if (owned)
-            this.nodes.put(node.name, node);
+    private void loadFromJdk(Class cls) {
+        ClassData data = getJdk().get(cls.name);
+        if (data == null)
+            Main.LOG.warning("Class not found: " + cls.name);
+        else
+            processClass(new Parsed(data, null, false));
     }
 
-    private void loadFromClasspath(Class cls) {
-        String path = cls.name.replace('.', '/') + ".class";
-        try (InputStream stream = this.getClass().getClassLoader().getResourceAsStream(path)) {
-            if (stream == null)
-                Main.LOG.warning("Class not found: " + cls.name);
-            else
-                processClass(stream, false);
-        } catch (IOException e) {
-            e.printStackTrace();
+    /**
+     * Writes every class that was read, including the ones of the base map, so that the map can be rebuilt by {@link #read(InputStream)} without
+     * having to read the jars again. The map is written before being resolved, as resolving it again is cheap.
+     * Class nodes are not saved, so {@link #getNode(String)} will not return anything for a map that was read back.
+     */
+    public void write(OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+        out.writeInt(FORMAT_VERSION);
+
+        List<Class> read = getClasses().stream().filter(Class::wasRead).sorted().collect(Collectors.toList());
+        out.writeInt(read.size());
+        for (Class cls : read) {
+            out.writeUTF(cls.name);
+            out.writeInt(cls.access);
+            out.writeInt(cls.hash == null ? -1 : cls.hash.length);
+            if (cls.hash != null)
+                out.write(cls.hash);
+            out.writeBoolean(cls.owned);
+            writeNullable(out, cls.parent == null ? null : cls.parent.name);
+
+            out.writeInt(cls.interfaces.size());
+            for (Class intf : cls.interfaces)
+                out.writeUTF(intf.name);
+
+            out.writeInt(cls.fields.size());
+            for (Field field : cls.fields.values()) {
+                out.writeUTF(field.name);
+                out.writeUTF(field.desc);
+                out.writeInt(field.access);
+            }
+
+            out.writeInt(cls.methods.size());
+            for (Method mtd : cls.methods.values()) {
+                out.writeUTF(mtd.name);
+                out.writeUTF(mtd.desc);
+                out.writeInt(mtd.access);
+                out.writeBoolean(mtd.isBouncer());
+                if (mtd.isBouncer()) {
+                    out.writeUTF(mtd.bounce.owner);
+                    out.writeUTF(mtd.bounce.name);
+                    out.writeUTF(mtd.bounce.desc);
+                }
+            }
+
+            out.writeInt(cls.references.size());
+            for (Reference ref : cls.references) {
+                out.writeByte(ref.kind.ordinal());
+                out.writeUTF(ref.owner);
+                writeNullable(out, ref.name);
+                writeNullable(out, ref.desc);
+            }
         }
+        out.flush();
     }
 
-    private static Set<String> findLambdas(ClassNode node) {
-        Set<String> lambdas = new HashSet<>();
-        for (MethodNode mtd : node.methods) {
-            for (AbstractInsnNode asn : (Iterable<AbstractInsnNode>)() -> mtd.instructions.iterator()) {
-                if (asn instanceof InvokeDynamicInsnNode) {
-                    Handle target = getLambdaTarget((InvokeDynamicInsnNode)asn);
-                    if (target != null) {
-                        lambdas.add(target.getOwner() + '/' + target.getName() + target.getDesc());
-                    }
+    /**
+     * Reads a map written by {@link #write(OutputStream)}. The returned map still needs to be resolved.
+     */
+    public static InheratanceMap read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        int version = in.readInt();
+        if (version != FORMAT_VERSION)
+            throw new IOException("Unsupported inheritance map version: " + version);
+
+        InheratanceMap ret = new InheratanceMap();
+        int count = in.readInt();
+        for (int x = 0; x < count; x++) {
+            Class cls = ret.getClass(in.readUTF());
+            cls.wasRead = true;
+            cls.access = in.readInt();
+            int hash = in.readInt();
+            if (hash != -1) {
+                cls.hash = new byte[hash];
+                in.readFully(cls.hash);
+            }
+            cls.owned = in.readBoolean();
+            cls.parent = ret.getClass(readNullable(in));
+
+            if (cls.owned)
+                ret.owned.add(cls);
+
+            for (int y = in.readInt(); y > 0; y--)
+                cls.interfaces.add(ret.getClass(in.readUTF()));
+
+            for (int y = in.readInt(); y > 0; y--) {
+                Field field = new Field(cls, in.readUTF(), in.readUTF(), in.readInt());
+                cls.fields.put(field.name, field);
+            }
+
+            for (int y = in.readInt(); y > 0; y--) {
+                String name = in.readUTF();
+                String desc = in.readUTF();
+                int access = in.readInt();
+                Method mtd = in.readBoolean()
+                    ? ret.new Method(cls, name, desc, access, in.readUTF(), in.readUTF(), in.readUTF())
+                    : ret.new Method(cls, name, desc, access, null, null, null);
+                cls.methods.put(name + desc, mtd);
+            }
+
+            int refs = in.readInt();
+            if (refs > 0) {
+                cls.references = new LinkedHashSet<>();
+                for (int y = 0; y < refs; y++) {
+                    Reference.Kind kind = Reference.Kind.values()[in.readByte()];
+                    cls.references.add(new Reference(kind, in.readUTF(), readNullable(in), readNullable(in)));
                 }
             }
+
+            ret.link(cls);
         }
-        return lambdas;
+
+        return ret;
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null)
+            out.writeUTF(value);
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
     }
 
     @Deprecated // remove building Bounced -> Bouncer list
     private void addBouncer(Class cls, Method m) {
         Class parent;
         for (parent = cls; parent != null && parent.wasRead(); parent = parent.getParent()) {
+            if (parent.frozen) // Already resolved, and can't be changed
+                return;
             Method target = parent.getMethod(m.bounce.name, m.bounce.desc);
             if (target != null) {
                 target.bouncers.add(m);
@@ -141,30 +378,170 @@ public class InheratanceMap {
         }
     }
 
-    private static Handle getLambdaTarget(InvokeDynamicInsnNode idn) {
-        if (LAMBDA_METAFACTORY.equals(idn.bsm)    && idn.bsmArgs != null && idn.bsmArgs.length == 3 && idn.bsmArgs[1] instanceof Handle)
-            return ((Handle)idn.bsmArgs[1]);
-        if (LAMBDA_ALTMETAFACTORY.equals(idn.bsm) && idn.bsmArgs != null && idn.bsmArgs.length == 5 && idn.bsmArgs[1] instanceof Handle)
-            return ((Handle)idn.bsmArgs[1]);
-        return null;
-    }
-
+    /**
+     * @return The class with this name, creating an empty entry for it if it's not known yet.
+     * @throws IllegalStateException If this map is frozen and does not know the class, see {@link #findClass(String)}.
+     */
     public Class getClass(String name) {
         if (name == null)
             return null;
+        Class ret = classes.get(name);
+        if (ret != null)
+            return ret;
+
+        // Classes the base map never read can be read by this one, so they are not shared.
+        if (base != null) {
+            ret = base.findClass(name);
+            if (ret != null && ret.wasRead)
+                return ret;
+        }
+
+        if (frozen)
+            throw new IllegalStateException("Class " + name + " is not in this frozen map");
         return classes.computeIfAbsent(name, k -> new Class(name));
     }
 
+    /**
+     * Finds a class without modifying this map, so it is safe to call while the map is shared.
+     * @return The class with this name, or null if it's not known.
+     */
+    public Class findClass(String name) {
+        if (name == null)
+            return null;
+        Class ret = classes.get(name);
+        if (ret == null && base != null)
+            ret = base.findClass(name);
+        return ret;
+    }
+
     public ClassNode getNode(String name) {
-        return nodes.get(name);
+        ClassNode ret = nodes.get(name);
+        if (ret == null && base != null)
+            ret = base.getNode(name);
+        return ret;
     }
 
     public Collection<Class> getOwned() {
         return this.ownedView;
     }
 
+    /**
+     * @return Every class known to this map, including ones that were only referenced and never read.
+     */
+    public Collection<Class> getClasses() {
+        if (base == null)
+            return Collections.unmodifiableCollection(this.classes.values());
+
+        List<Class> ret = new ArrayList<>(this.classes.values());
+        for (Class cls : base.getClasses()) {
+            if (!this.classes.containsKey(cls.name))
+                ret.add(cls);
+        }
+        return Collections.unmodifiableList(ret);
+    }
+
+    /**
+     * @return True if this map was {@link #freeze() frozen}.
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Same as {@link Method#getRoots()}, except that methods of the base map also get the overrides that this map's classes linked to them.
+     */
+    public Collection<Method> getRoots(Method mtd) {
+        if (mtd.getMap() == this)
+            return mtd.getRoots();
+        if (linked.isEmpty())
+            return base == null ? mtd.getRoots() : base.getRoots(mtd);
+
+        Set<Method> overrides = getOverrides(mtd);
+        if (overrides.isEmpty())
+            return Collections.singletonList(mtd);
+        Set<Method> ret = new HashSet<>();
+        for (Method override : overrides)
+            ret.addAll(getRoots(override));
+        return ret;
+    }
+
+    // The methods this one directly overrides, including the ones linked to it by this map.
+    private Set<Method> getOverrides(Method mtd) {
+        Set<Method> ret = base == null || mtd.getMap() == this ? mtd.overrides : base.getOverrides(mtd);
+        Set<Method> extra = linked.get(mtd);
+        if (extra == null)
+            return ret;
+        ret = new HashSet<>(ret);
+        ret.addAll(extra);
+        return ret;
+    }
+
     public void resolve() {
+        FlightEvents.Span event = FlightEvents.resolve();
         getOwned().forEach(this::resolve);
+        event.end(getOwned().size());
+    }
+
+    // Adds entries for every class that the owned classes reference, or that a bouncer targets.
+    private void addReferenced() {
+        for (Class cls : owned) {
+            for (Reference ref : cls.references)
+                getClass(ref.owner);
+        }
+
+        for (Class cls : new ArrayList<>(classes.values())) {
+            for (Method mtd : cls.methods.values()) {
+                if (mtd.isBouncer())
+                    getClass(mtd.bounce.owner);
+            }
+        }
+    }
+
+    /**
+     * Resolves every class that was read into this map, not just the owned ones, and fills everything that is otherwise computed lazily.
+     * After which the map is read only: classes can not be added, {@link #getClass(String)} does not create entries anymore,
+     * and nothing is cached lazily. So it can be shared by any number of threads and verifiers without locking,
+     * or used as the base of other maps, see {@link #InheratanceMap(ClassStore, InheratanceMap)}.
+     *
+     * @return This map.
+     */
+    public InheratanceMap freeze() {
+        if (frozen)
+            return this;
+
+        resolve();
+        addReferenced();
+
+        // Resolving a class can read the classes it extends, so go until nothing new shows up.
+        // Classes that were only referenced are left as they are, same as when resolving only the owned classes.
+        for (int size = -1; size != classes.size(); ) {
+            size = classes.size();
+            for (Class cls : new ArrayList<>(classes.values())) {
+                if (cls.wasRead)
+                    resolve(cls);
+            }
+        }
+
+        // A stack or roots cached while resolving can be missing the classes read after it, so they are all computed again.
+        // Otherwise a map of only libraries would freeze them without their JDK parents, and maps built on it would differ from one built in one go.
+        for (Class cls : classes.values()) {
+            cls.stack = null;
+            for (Method mtd : cls.methods.values())
+                mtd.roots = null;
+        }
+
+        for (Class cls : classes.values()) {
+            cls.resolved = true;
+            cls.freeze();
+        }
+
+        this.classes = Collections.unmodifiableMap(classes);
+        this.nodes = Collections.unmodifiableMap(nodes);
+        this.bouncers = Collections.emptyMap();
+        this.toResolveBouncers = Collections.emptyMap();
+        this.linked = Collections.unmodifiableMap(linked);
+        this.frozen = true;
+        return this;
     }
 
     private void resolve(Class cls) {
@@ -175,7 +552,7 @@ public class InheratanceMap {
         //    Main.LOG.warning("Resolving: " + cls.name);
 
         if (!cls.wasRead)
-            loadFromClasspath(cls);
+            loadFromJdk(cls);
 
         resolve(cls.getParent());
         cls.interfaces.forEach(this::resolve);
@@ -189,7 +566,8 @@ public class InheratanceMap {
             for (Class parent : cls.getStack()) {
                 Method pmtd = parent.getMethod(mtd.name, mtd.desc);
                 if (pmtd != null && canBeOverriden.test(pmtd)) {
-                    mtd.overrides.addAll(pmtd.getRoots(false));
+                    Set<Method> overrides = getOverrides(pmtd);
+                    mtd.overrides.addAll(overrides.isEmpty() ? Collections.singleton(pmtd) : overrides);
                     break;
                 }
             }
@@ -222,7 +600,7 @@ public class InheratanceMap {
             stack.stream()
             .flatMap(c -> c.methods.values().stream())
             .filter(Node::isAbstract)
-            .filter(mtd -> mtd.overrides.isEmpty())
+            .filter(mtd -> getOverrides(mtd).isEmpty())
             .forEach(mtd -> abs.put(mtd.name + mtd.desc, mtd));
 
             for (Class parent : stack) {
@@ -231,7 +609,11 @@ public class InheratanceMap {
                         continue;
 
                     Method target = abs.remove(mtd.name + mtd.desc);
-                    if (target != null)
+                    if (target == null)
+                        continue;
+                    if (parent.frozen)
+                        linked.computeIfAbsent(mtd, k -> new HashSet<>()).add(target);
+                    else
                         mtd.overrides.add(target);
                 }
             }
@@ -245,6 +627,7 @@ public class InheratanceMap {
         private boolean wasRead = false;
         private boolean owned = false;
         private int access = 0;
+        private byte[] hash = null;
         private Class parent;
         public final String name;
         private final Map<String, Field> fields = new TreeMap<>();
@@ -253,7 +636,9 @@ public class InheratanceMap {
         private final Map<String, Method> methodsView = Collections.unmodifiableMap(methods);
         private final List<Class> interfaces = new ArrayList<>();
         private final List<Class> interfacesView = Collections.unmodifiableList(interfaces);
+        private Set<Reference> references = Collections.emptySet();
         private List<Class> stack = null;
+        private boolean frozen = false;
 
         public Class(String name) {
             this.name = name;
@@ -275,6 +660,13 @@ public class InheratanceMap {
             return access;
         }
 
+        /**
+         * @return The SHA-1 hash of the bytecode this class was read from, or null if it was never read or the map is not {@link InheratanceMap#setHashing(boolean) hashing}.
+         */
+        public byte[] getHash() {
+            return hash == null ? null : hash.clone();
+        }
+
         public boolean isAbstract() {
             return Modifier.isAbstract(getAccess());
         }
@@ -299,6 +691,13 @@ public class InheratanceMap {
             return this.interfacesView;
         }
 
+        /**
+         * @return The distinct references made by this class's code, only gathered for owned classes.
+         */
+        public Collection<Reference> getReferences() {
+            return Collections.unmodifiableSet(this.references);
+        }
+
         @Override
         public String toString() {
             return this.name + " [" + fields.size() + ", " + methods.size() + "]";
@@ -340,6 +739,13 @@ public class InheratanceMap {
             if (o == null) return -1;
             return this.name.compareTo(o.name);
         }
+
+        private void freeze() {
+            this.stack = Collections.unmodifiableList(getStack());
+            for (Method mtd : methods.values())
+                mtd.freeze();
+            this.frozen = true;
+        }
     }
 
     public static class Node implements Comparable<Node> {
@@ -395,8 +801,8 @@ public class InheratanceMap {
     }
 
     public static class Field extends Node {
-        Field(Class owner, FieldNode n) {
-            super(owner, n.name, n.desc, n.access);
+        Field(Class owner, String name, String desc, int access) {
+            super(owner, name, desc, access);
         }
     }
 
@@ -407,55 +813,9 @@ public class InheratanceMap {
         private Set<Method> overrides = new HashSet<>();
         private Collection<Method> roots;
 
-        Method(Class owner, MethodNode node, boolean lambda) {
-            super(owner, node.name, node.desc, node.access);
-            Bounce bounce = null;
-            if (!lambda && (node.access & (Opcodes.ACC_SYNTHETIC | Opcodes.ACC_BRIDGE)) != 0 && !Modifier.isStatic(node.access)) {
-                AbstractInsnNode start = node.instructions.getFirst();
-                if (start instanceof LabelNode && start.getNext() instanceof LineNumberNode)
-                    start = start.getNext().getNext();
-
-                if (start instanceof VarInsnNode) {
-                    VarInsnNode n = (VarInsnNode)start;
-                    if (n.var == 0 && n.getOpcode() == Opcodes.ALOAD) {
-                        AbstractInsnNode end = node.instructions.getLast();
-                        if (end instanceof LabelNode)
-                            end = end.getPrevious();
-
-                        if (end.getOpcode() >= Opcodes.IRETURN && end.getOpcode() <= Opcodes.RETURN)
-                            end = end.getPrevious();
-
-                        if (end instanceof MethodInsnNode) {
-                            Type[] args = Type.getArgumentTypes(node.desc);
-                            int var = 1;
-                            int index = 0;
-                            start = start.getNext();
-                            while (start != end) {
-                                if (start instanceof VarInsnNode) {
-                                    if (((VarInsnNode)start).var != var || index + 1 > args.length) {
-                                        //Arguments are switched around, so seems like lambda!
-                                        end = null;
-                                        break;
-                                    }
-                                    var += args[index++].getSize();
-                                } else if (start.getOpcode() == Opcodes.INSTANCEOF || start.getOpcode() == Opcodes.CHECKCAST) {
-                                    //Valid!
-                                } else {
-                                    // Anything else is invalid in a bouncer {As far as I know}, so we're most likely a lambda
-                                    end = null;
-                                    break;
-                                }
-                                start = start.getNext();
-                            }
-
-                            MethodInsnNode mtd = (MethodInsnNode)end;
-                            if (end != null && Type.getArgumentsAndReturnSizes(node.desc) == Type.getArgumentsAndReturnSizes(mtd.desc))
-                                bounce = new Bounce(mtd.owner, mtd.name, mtd.desc);
-                        }
-                    }
-                }
-            }
-            this.bounce = bounce;
+        Method(Class owner, String name, String desc, int access, String bounceOwner, String bounceName, String bounceDesc) {
+            super(owner, name, desc, access);
+            this.bounce = bounceOwner == null ? null : new Bounce(bounceOwner, bounceName, bounceDesc);
         }
 
         public boolean isBouncer() {
@@ -468,11 +828,29 @@ public class InheratanceMap {
 
         @Deprecated // remove building Bounced -> Bouncer list
         public Set<Method> getBouncers() {
-            return this.bouncers;
+            return owner.frozen ? Collections.unmodifiableSet(this.bouncers) : this.bouncers;
         }
 
+        /**
+         * @return The methods this one overrides that don't override anything themselves, or this method if it doesn't override anything.
+         * For a method of a map that others are layered on, this doesn't include what those maps linked to it, see {@link InheratanceMap#getRoots(Method)}.
+         */
         public Collection<Method> getRoots() {
-            return getRoots(true);
+            if (roots == null) {
+                Set<Method> overrides = getOverrides(this);
+                if (overrides.isEmpty()) {
+                    roots = Arrays.asList(this);
+                } else {
+                    roots = overrides;
+                    while (roots.stream().anyMatch(mtd -> !getOverrides(mtd).isEmpty()))
+                        roots = roots.stream().map(InheratanceMap.this::getRoots).flatMap(Collection::stream).collect(Collectors.toSet());
+                }
+            }
+            return roots;
+        }
+
+        private InheratanceMap getMap() {
+            return InheratanceMap.this;
         }
 
         public boolean isInheritable() {
@@ -481,23 +859,9 @@ public class InheratanceMap {
             return !Modifier.isStatic(access) && !Modifier.isPrivate(access) && !name.startsWith("<");
         }
 
-        private Collection<Method> getRoots(boolean resolveNested) {
-            if (roots == null || !resolveNested) {
-                Collection<InheratanceMap.Method> roots;
-                if (this.overrides.isEmpty()) {
-                    roots = Arrays.asList(this);
-                } else {
-                    roots = this.overrides;
-                    while (resolveNested && roots.stream().anyMatch((mtd) -> !mtd.overrides.isEmpty())) {
-                        roots = roots.stream().map(Method::getRoots).flatMap(Collection::stream).collect(Collectors.toSet());
-                    }
-                }
-                if (resolveNested)
-                    this.roots = roots;
-                else
-                    return roots;
-            }
-            return roots;
+        private void freeze() {
+            this.roots = Collections.unmodifiableCollection(getRoots());
+            this.overrides = Collections.unmodifiableSet(overrides);
         }
 
         public class Bounce {
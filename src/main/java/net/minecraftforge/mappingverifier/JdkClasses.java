@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) Forge Development LLC
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+package net.minecraftforge.mappingverifier;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Reads the JDK classes that are referenced by the verified jars, instead of asking our own classloader for them.
+ * Which means the result doesn't depend on what else is on our classpath, and a specific Java release can be targeted.
+ * <p>
+ * The running JDK is read from its {@code jrt:/} filesystem, or its {@code rt.jar} on Java 8. Older releases are read from the
+ * running JDK's {@code lib/ct.sym}, which holds the public API of every release it can compile for.
+ * An index of every class name is built once, and the classes are only parsed once per process.
+ */
+public class JdkClasses {
+    private static final Map<Integer, JdkClasses> INSTANCES = new ConcurrentHashMap<>();
+    private static final int RUNTIME = runtimeRelease();
+
+    private final int release;
+    private final String description;
+    private final Source source;
+    private final Map<String, ClassData> classes = new ConcurrentHashMap<>();
+
+    private JdkClasses(int release, String description, Source source) {
+        this.release = release;
+        this.description = description;
+        this.source = source;
+    }
+
+    /**
+     * @return The classes of the JDK we are running on.
+     */
+    public static JdkClasses runtime() {
+        return forRelease(RUNTIME);
+    }
+
+    /**
+     * @return The classes of the specified Java release, such as 8 or 17.
+     * @throws IllegalArgumentException If the running JDK does not have the classes for that release.
+     */
+    public static JdkClasses forRelease(int release) {
+        JdkClasses ret = INSTANCES.get(release);
+        if (ret == null) {
+            try {
+                ret = INSTANCES.computeIfAbsent(release, JdkClasses::open);
+            } catch (UncheckedIOException e) {
+                throw new IllegalArgumentException("Could not read the classes of Java " + release + ": " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+        return ret;
+    }
+
+    private static JdkClasses open(int release) {
+        File home = new File(System.getProperty("java.home"));
+        try {
+            if (release == RUNTIME) {
+                if (RUNTIME <= 8)
+                    return new JdkClasses(release, "Runtime " + System.getProperty("java.version"), new ZipSource(new File(home, "lib/rt.jar"), ""));
+                FileSystem jrt = FileSystems.getFileSystem(URI.create("jrt:/"));
+                return new JdkClasses(release, "Runtime " + System.getProperty("java.version"), new JrtSource(jrt));
+            }
+
+            if (release > RUNTIME)
+                throw new IllegalArgumentException("Java " + release + " is newer then the running Java " + RUNTIME);
+            if (RUNTIME <= 8)
+                throw new IllegalArgumentException("Targeting an older Java release needs to run on Java 9 or newer");
+
+            File ctsym = new File(home, "lib/ct.sym");
+            if (!ctsym.exists())
+                throw new IllegalArgumentException("Java " + RUNTIME + " does not have a ct.sym at " + ctsym);
+            return new JdkClasses(release, "Release " + release + " from Java " + System.getProperty("java.version"), new ZipSource(ctsym, releaseCode(release)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return The release of the JDK classes, such as 8 or 17.
+     */
+    public int getRelease() {
+        return release;
+    }
+
+    /**
+     * @return A description of where these classes come from, which changes whenever they can.
+     */
+    public String describe() {
+        return description;
+    }
+
+    /**
+     * @param name The internal name of a class, such as {@code java/lang/Object}.
+     * @return The parsed class, or null if it is not part of this JDK.
+     */
+    ClassData get(String name) {
+        ClassData ret = classes.get(name);
+        if (ret != null)
+            return ret;
+
+        byte[] data;
+        try {
+            data = source.read(name);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (data == null)
+            return null;
+
+        ret = new ClassData(ClassData.read(data), InheratanceMap.hash(data), false, UnaryOperator.identity());
+        ClassData existing = classes.putIfAbsent(name, ret);
+        return existing == null ? ret : existing;
+    }
+
+    private static int runtimeRelease() {
+        String version = System.getProperty("java.specification.version");
+        if (version.startsWith("1."))
+            version = version.substring(2);
+        return Integer.parseInt(version);
+    }
+
+    // ct.sym names the releases with a single character, 7 to 9 and then A for 10, B for 11, etc.
+    private static String releaseCode(int release) {
+        if (release < 7 || release > 9 + 26)
+            throw new IllegalArgumentException("Unsupported Java release: " + release);
+        return String.valueOf(release <= 9 ? (char)('0' + release) : (char)('A' + release - 10));
+    }
+
+    private interface Source {
+        /** @return The bytes of the class, or null if there is no such class. */
+        byte[] read(String name) throws IOException;
+    }
+
+    /*
+     * The modules image of the running JDK. Its /packages directory lists the module of every package,
+     * so that is the index, and a class is then read directly from /modules/<module>/.
+     */
+    private static class JrtSource implements Source {
+        private final FileSystem fs;
+        private final Map<String, Path> packages = new HashMap<>();
+
+        private JrtSource(FileSystem fs) throws IOException {
+            this.fs = fs;
+            try (DirectoryStream<Path> pkgs = Files.newDirectoryStream(fs.getPath("/packages"))) {
+                for (Path pkg : pkgs) {
+                    try (DirectoryStream<Path> modules = Files.newDirectoryStream(pkg)) {
+                        for (Path module : modules) {
+                            // Split packages can't exist in the boot layer, so the first module is the only one.
+                            packages.putIfAbsent(pkg.getFileName().toString().replace('.', '/'), fs.getPath("/modules", module.getFileName().toString()));
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+
+        @Override
+        public byte[] read(String name) throws IOException {
+            int idx = name.lastIndexOf('/');
+            Path module = packages.get(idx == -1 ? "" : name.substring(0, idx));
+            if (module == null)
+                return null;
+
+            Path path = module.resolve(name + ".class");
+            if (!Files.exists(path))
+                return null;
+            return Files.readAllBytes(path);
+        }
+    }
+
+    /*
+     * A zip, either rt.jar or ct.sym. The index of every class in it is built once when it's opened.
+     * ct.sym entries are named <releases>/[<module>/]<class>.sig, where releases lists every release the entry is part of,
+     * so only entries with our release's code are indexed.
+     */
+    private static class ZipSource implements Source {
+        private final ZipFile zip;
+        private final Map<String, ZipEntry> index = new HashMap<>();
+
+        private ZipSource(File file, String code) throws IOException {
+            this.zip = new ZipFile(file);
+            boolean ctsym = !code.isEmpty();
+            Enumeration<? extends ZipEntry> itr = zip.entries();
+            while (itr.hasMoreElements()) {
+                ZipEntry e = itr.nextElement();
+                String name = e.getName();
+                if (e.isDirectory())
+                    continue;
+
+                if (!ctsym) {
+                    if (name.endsWith(".class"))
+                        index.put(name.substring(0, name.length() - 6), e);
+                    continue;
+                }
+
+                int idx = name.indexOf('/');
+                if (idx == -1 || !name.endsWith(".sig") || name.substring(0, idx).indexOf(code) == -1)
+                    continue;
+
+                name = name.substring(idx + 1, name.length() - 4);
+                idx = name.indexOf('/');
+                if (idx != -1 && name.substring(0, idx).indexOf('.') != -1) // Module name
+                    name = name.substring(idx + 1);
+                index.put(name, e);
+            }
+        }
+
+        @Override
+        public byte[] read(String name) throws IOException {
+            ZipEntry entry = index.get(name);
+            if (entry == null)
+                return null;
+            try (InputStream in = zip.getInputStream(entry)) {
+                return InheratanceMap.readAll(in);
+            }
+        }
+    }
+}
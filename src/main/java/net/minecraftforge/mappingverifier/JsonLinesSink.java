@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) Forge Development LLC
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+package net.minecraftforge.mappingverifier;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * One JSON object per line: {@code task}, {@code kind}, {@code class}, {@code member}, {@code mapped}, {@code message} and {@code details}.
+ * Missing parts are left out. Only flushed when asked, and only if something was written since.
+ */
+class JsonLinesSink implements DiagnosticSink {
+    private final Writer out;
+    private final StringBuilder buf = new StringBuilder();
+    private boolean dirty = false;
+
+    JsonLinesSink(Writer out) {
+        this.out = out;
+    }
+
+    @Override
+    public synchronized void accept(Diagnostic diagnostic) {
+        buf.setLength(0);
+        buf.append('{');
+        field("task", diagnostic.getTask());
+        field("kind", diagnostic.getKind());
+        field("class", diagnostic.getClassName());
+        field("member", diagnostic.getMember());
+        array("mapped", diagnostic.getMapped());
+        field("message", diagnostic.getMessage());
+        array("details", diagnostic.getDetails());
+        buf.append("}\n");
+        try {
+            out.write(buf.toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        dirty = true;
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (!dirty)
+            return;
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        dirty = false;
+    }
+
+    private void field(String name, String value) {
+        if (value == null)
+            return;
+        key(name);
+        string(value);
+    }
+
+    private void array(String name, List<String> values) {
+        if (values.isEmpty())
+            return;
+        key(name);
+        buf.append('[');
+        for (int x = 0; x < values.size(); x++) {
+            if (x != 0)
+                buf.append(',');
+            string(values.get(x));
+        }
+        buf.append(']');
+    }
+
+    private void key(String name) {
+        if (buf.length() > 1)
+            buf.append(',');
+        string(name);
+        buf.append(':');
+    }
+
+    private void string(String value) {
+        quote(buf, value);
+    }
+
+    /**
+     * Appends the value as a JSON string, quoted and escaped.
+     */
+    static void quote(StringBuilder buf, String value) {
+        buf.append('"');
+        for (int x = 0; x < value.length(); x++) {
+            char c = value.charAt(x);
+            switch (c) {
+                case '"':  buf.append("\\\""); break;
+                case '\\': buf.append("\\\\"); break;
+                case '\n': buf.append("\\n"); break;
+                case '\r': buf.append("\\r"); break;
+                case '\t': buf.append("\\t"); break;
+                default:
+                    if (c < 0x20)
+                        buf.append(String.format("\\u%04x", (int)c));
+                    else
+                        buf.append(c);
+            }
+        }
+        buf.append('"');
+    }
+}
@@ -7,9 +7,13 @@ package net.minecraftforge.mappingverifier;
 import java.io.File;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
 import java.util.logging.FileHandler;
 import java.util.logging.Formatter;
@@ -17,11 +21,13 @@ import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
 
 import joptsimple.OptionException;
 import joptsimple.OptionParser;
 import joptsimple.OptionSet;
 import joptsimple.OptionSpec;
+import net.minecraftforge.srgutils.IMappingFile;
 
 public class Main {
     public static final String SIMPLE_NAME = Main.class.getSimpleName();
@@ -32,11 +38,34 @@ public class Main {
         OptionParser parser = new OptionParser();
         parser.accepts("help").forHelp();
         parser.accepts("version").forHelp();
-        OptionSpec<File> jarArg = parser.accepts("jar").withRequiredArg().ofType(File.class).required();
-        OptionSpec<File> mapArg = parser.accepts("map").withRequiredArg().ofType(File.class).required();
+        OptionSpec<Integer> daemonArg = parser.accepts("daemon").withRequiredArg().ofType(Integer.class);
+        OptionSpec<File> jarArg = parser.accepts("jar").requiredUnless("daemon").withRequiredArg().ofType(File.class);
+        OptionSpec<File> mapArg = parser.accepts("map").requiredUnless("daemon").withRequiredArg().ofType(File.class);
         OptionSpec<String> logArg = parser.accepts("log").withRequiredArg().ofType(String.class);
         OptionSpec<File> libsArg = parser.accepts("libs").withRequiredArg().ofType(File.class);
         OptionSpec<File> libArg = parser.accepts("lib").withRequiredArg().ofType(File.class);
+        OptionSpec<File> stateArg = parser.accepts("state").withRequiredArg().ofType(File.class);
+        OptionSpec<File> cacheArg = parser.accepts("cache").withRequiredArg().ofType(File.class);
+        OptionSpec<Integer> connectArg = parser.accepts("connect").withRequiredArg().ofType(Integer.class);
+        OptionSpec<Integer> shardsArg = parser.accepts("shards").withRequiredArg().ofType(Integer.class);
+        OptionSpec<File> shardClassesArg = parser.accepts("shard-classes").withRequiredArg().ofType(File.class);
+        OptionSpec<File> shardResultArg = parser.accepts("shard-result").requiredIf("shard-classes").withRequiredArg().ofType(File.class);
+        OptionSpec<Void> shardPrimaryArg = parser.accepts("shard-primary");
+        OptionSpec<Void> parallelArg = parser.accepts("parallel");
+        OptionSpec<Integer> releaseArg = parser.accepts("release").withRequiredArg().ofType(Integer.class);
+        OptionSpec<String> nestedArg = parser.accepts("nested").withRequiredArg().ofType(String.class);
+        OptionSpec<String> nestedJarArg = parser.accepts("nested-jar").withRequiredArg().ofType(String.class);
+        OptionSpec<String> executorArg = parser.accepts("executor").withRequiredArg().ofType(String.class);
+        OptionSpec<Void> chainArg = parser.accepts("chain");
+        OptionSpec<File> jsonArg = parser.accepts("json").withRequiredArg().ofType(File.class);
+        OptionSpec<Integer> maxErrorsArg = parser.accepts("max-errors").withRequiredArg().ofType(Integer.class);
+        OptionSpec<Void> failFastArg = parser.accepts("fail-fast");
+        OptionSpec<Void> quickArg = parser.accepts("quick");
+        OptionSpec<Double> quickSampleArg = parser.accepts("quick-sample").withRequiredArg().ofType(Double.class);
+        OptionSpec<Long> quickSeedArg = parser.accepts("quick-seed").withRequiredArg().ofType(Long.class);
+        OptionSpec<String> quickClassesArg = parser.accepts("quick-classes").withRequiredArg().ofType(String.class);
+        OptionSpec<File> metricsArg = parser.accepts("metrics").withRequiredArg().ofType(File.class);
+        OptionSpec<File> jfrArg = parser.accepts("jfr").withRequiredArg().ofType(File.class);
         OptionSpec<Void> verboseArg = parser.accepts("verbose");
 
         try {
@@ -51,10 +80,35 @@ public class Main {
             }
 
             File jarFile = jarArg.value(options);
-            File mapFile = mapArg.value(options);
+            List<File> mapFiles = options.valuesOf(mapArg);
+            File mapFile = mapFiles.isEmpty() ? null : mapFiles.get(0);
             String logFile = logArg.value(options);
             //String snapVersion = options.has(snapArg) ? snapArg.value(options) : null;
             File libsFile = options.has(libsArg) ? libsArg.value(options) : null;
+            File stateDir = options.has(stateArg) ? stateArg.value(options) : null;
+            File cacheDir = options.has(cacheArg) ? cacheArg.value(options) : null;
+            Integer connect = options.has(connectArg) ? connectArg.value(options) : null;
+            Integer shards = options.has(shardsArg) ? shardsArg.value(options) : null;
+            Integer release = options.has(releaseArg) ? releaseArg.value(options) : null;
+            NestedJars nested = options.has(nestedArg) ? NestedJars.valueOf(nestedArg.value(options).toUpperCase(Locale.ENGLISH)) : null;
+            List<String> nestedJars = options.valuesOf(nestedJarArg);
+            boolean parallel = options.has(parallelArg);
+            ExecutorBackend executor = options.has(executorArg) ? ExecutorBackend.valueOf(executorArg.value(options).toUpperCase(Locale.ENGLISH)) : ExecutorBackend.AUTO;
+            boolean chain = options.has(chainArg);
+            File jsonFile = options.has(jsonArg) ? jsonArg.value(options) : null;
+            int maxErrors = options.has(failFastArg) ? 1 : options.has(maxErrorsArg) ? maxErrorsArg.value(options) : 0;
+            QuickCheck quick = null;
+            if (options.has(quickArg) || options.has(quickSampleArg) || options.has(quickSeedArg) || options.has(quickClassesArg)) {
+                quick = new QuickCheck();
+                if (options.has(quickSampleArg))
+                    quick.setRate(quickSampleArg.value(options) / 100);
+                if (options.has(quickSeedArg))
+                    quick.setSeed(quickSeedArg.value(options));
+                if (options.has(quickClassesArg))
+                    quick.setFilter(Pattern.compile(quickClassesArg.value(options)));
+            }
+            File metricsFile = options.has(metricsArg) ? metricsArg.value(options) : null;
+            File jfrFile = options.has(jfrArg) ? jfrArg.value(options) : null;
             boolean verbose = options.has(verboseArg);
 
             Main.LOG.setUseParentHandlers(false);
@@ -86,24 +140,76 @@ public class Main {
             Main.LOG.addHandler(new Handler() {
                 @Override
                 public void publish(LogRecord record) {
+                    // Only formatted when given parameters, as messages such as the quick check's coverage contain '%'.
                     if (verbose || record.getLevel().intValue() >= Level.WARNING.intValue())
-                        System.out.println(String.format(record.getMessage(), record.getParameters()));
+                        System.out.println(record.getParameters() == null ? record.getMessage() : String.format(record.getMessage(), record.getParameters()));
                 }
                 @Override public void flush() {}
                 @Override public void close() throws SecurityException {}
             });
 
             log(Main.VERSION);
+            if (options.has(daemonArg)) {
+                new Daemon(daemonArg.value(options)).run();
+                return;
+            }
+
             log("Jar:      " + jarFile);
-            log("Map:      " + mapFile);
+            for (File map : mapFiles)
+                log("Map:      " + map);
             log("Log:      " + logFile);
             log("Libs:     " + libsFile);
+            if (stateDir != null)
+                log("State:    " + stateDir);
+            if (cacheDir != null)
+                log("Cache:    " + cacheDir);
+            if (connect != null)
+                log("Daemon:   " + connect);
+            if (shards != null)
+                log("Shards:   " + shards);
+            if (release != null)
+                log("Release:  " + release);
+            if (nested != null)
+                log("Nested:   " + nested);
+            for (String line : nestedJars)
+                log("Nested:   " + line);
+            if (executor != ExecutorBackend.AUTO)
+                log("Executor: " + executor);
+            if (jsonFile != null)
+                log("Json:     " + jsonFile);
+            if (maxErrors != 0)
+                log("Max Errs: " + maxErrors);
+            if (metricsFile != null)
+                log("Metrics:  " + metricsFile);
+            if (jfrFile != null) {
+                log("JFR:      " + jfrFile);
+                // Written when the JVM exits, so it also covers runs that fail.
+                if (!FlightEvents.record(jfrFile))
+                    log("Flight Recorder is not available on this JVM, --jfr is ignored");
+            }
+            if (quick != null)
+                log("Quick:    " + (options.has(quickClassesArg) ? quickClassesArg.value(options) : (options.has(quickSampleArg) ? quickSampleArg.value(options) : 5) + "%"));
 
+            Metrics metrics = metricsFile == null ? null : new Metrics();
+            // Exits with an error once the metrics are written, for runs that found errors or were stopped early.
+            boolean failed = false;
             try {
                 MappingVerifier mv = new MappingVerifier();
+                mv.setExecutor(executor);
+                mv.setMetrics(metrics);
+                if (release != null)
+                    mv.setRelease(release);
+                if (nested != null)
+                    mv.setNestedJars(nested);
+                for (String line : nestedJars) {
+                    int idx = line.lastIndexOf('=');
+                    if (idx == -1)
+                        throw new IllegalArgumentException("Invalid --nested-jar, expected <name>=<skip|library|inherit>: " + line);
+                    mv.setNestedJars(line.substring(0, idx), NestedJars.valueOf(line.substring(idx + 1).toUpperCase(Locale.ENGLISH)));
+                }
 
+                mv.setMaxErrors(maxErrors);
                 mv.addDefaultTasks();
-                mv.loadMap(mapFile);
 
                 List<File> libs = new ArrayList<>();
                 if (libsFile != null) {
@@ -123,26 +229,131 @@ public class Main {
                 }
                 libs.addAll(options.valuesOf(libArg));
 
-                for (File lib : libs) {
+                for (File lib : libs)
                     log("Lib:      " + lib);
-                    mv.loadLibrary(lib);
+
+                if (options.has(shardClassesArg)) {
+                    mv.loadMap(mapFile);
+                    Shards.work(mv, jarFile, libs, shardClassesArg.value(options), shardResultArg.value(options), options.has(shardPrimaryArg));
+                    return;
                 }
 
-                mv.loadJar(jarFile);
+                if (mapFiles.size() > 1 || chain) {
+                    if (stateDir != null || cacheDir != null || connect != null || shards != null || quick != null)
+                        throw new IllegalArgumentException("--state, --cache, --connect, --shards and --quick can not be used with --chain or multiple --map");
+
+                    for (File lib : libs)
+                        mv.loadLibrary(lib);
+                    mv.loadJar(jarFile);
 
-                if (!mv.verify()) {
-                    for (IVerifier task : mv.getTasks()) {
-                        if (!task.getErrors().isEmpty()) {
-                            log("Task: " + task.getName());
-                            task.getErrors().forEach(l -> log("    " + l));
+                    List<IMappingFile> maps = new ArrayList<>();
+                    for (File map : mapFiles)
+                        maps.add(IMappingFile.load(map));
+
+                    List<MappingVerifier> results = chain ? mv.verifyChain(maps) : mv.verify(maps, parallel);
+                    for (int x = 0; x < results.size(); x++) {
+                        List<IVerifier> tasks = results.get(x).getTasks();
+                        if (tasks.stream().anyMatch(t -> !t.getErrors().isEmpty())) {
+                            failed = true;
+                            log((chain ? "Stage: " : "Map: ") + mapFiles.get(x));
+                            DiagnosticSink sink = DiagnosticSink.console();
+                            tasks.forEach(task -> task.getDiagnostics().forEach(sink::accept));
+                        }
+                        if (results.get(x).isCancelled()) {
+                            failed = true;
+                            log("Stopped after " + results.get(x).getErrorCount() + " errors, the report is incomplete");
                         }
                     }
+                    return;
+                }
+
+                try (Writer json = jsonFile == null ? null : Files.newBufferedWriter(jsonFile.toPath(), StandardCharsets.UTF_8)) {
+                    DiagnosticSink sink = json == null ? DiagnosticSink.console() : DiagnosticSink.both(DiagnosticSink.console(), DiagnosticSink.jsonLines(json));
+                    if ((connect != null || shards != null) && (nested != null || !nestedJars.isEmpty()))
+                        throw new IllegalArgumentException("--nested and --nested-jar can not be used with --connect or --shards");
+                    if ((connect != null || shards != null) && maxErrors != 0)
+                        throw new IllegalArgumentException("--max-errors and --fail-fast can not be used with --connect or --shards");
+                    if (quick != null && (stateDir != null || cacheDir != null || connect != null || shards != null))
+                        throw new IllegalArgumentException("--state, --cache, --connect and --shards can not be used with --quick");
+
+                    ResultCache cache = cacheDir == null ? null : new ResultCache(cacheDir);
+                    String key = cache == null ? null : mv.fingerprint(jarFile, mapFile, libs);
+                    ResultCache.Result cached = cache == null ? null : cache.load(key);
+                    if (metrics != null && cache != null)
+                        metrics.count(cached != null ? Metrics.CACHE_HITS : Metrics.CACHE_MISSES, 1);
+                    if (cached != null) {
+                        Main.LOG.info("Cached: " + key);
+                        if (!cached.isValid())
+                            replay(sink, cached);
+                        failed = !cached.isValid();
+                        return;
+                    }
+
+                    ResultCache.Result result = null;
+                    if (connect != null) {
+                        // Streamed to the sink as the daemon finds them.
+                        result = Daemon.request(connect, jarFile, mapFile, libs, release, Collections.emptyList(), sink);
+                    } else if (shards != null) {
+                        result = Shards.run(jarFile, mapFile, libs, release, shards);
+                        if (!result.isValid())
+                            replay(sink, result);
+                    }
+
+                    if (result != null) {
+                        if (cache != null)
+                            cache.store(key, result);
+                        failed = !result.isValid();
+                        return;
+                    }
+
+                    mv.loadMap(mapFile);
+                    if (stateDir == null || !mv.loadState(stateDir, jarFile, libs)) {
+                        for (File lib : libs)
+                            mv.loadLibrary(lib);
+
+                        mv.loadJar(jarFile);
+                    }
+
+                    if (quick != null) {
+                        mv.setSink(sink);
+                        mv.setRetainErrors(false);
+                        QuickCheck.Coverage coverage = quick.verify(mv);
+                        coverage.getLines().forEach(Main::log);
+                        failed = !coverage.isValid() || mv.isCancelled();
+                        return;
+                    }
+
+                    // The errors are only needed after verifying to store them in the cache, otherwise they are only streamed to the sink.
+                    mv.setSink(sink);
+                    mv.setRetainErrors(cache != null);
+                    boolean valid = mv.verify();
+                    failed = !valid;
+                    if (mv.isCancelled()) {
+                        // A partial result would hide the errors after the budget, so it's neither saved nor cached.
+                        log("Stopped after " + mv.getErrorCount() + " errors, the report is incomplete");
+                        return;
+                    }
+                    if (stateDir != null)
+                        mv.saveState();
+                    if (cache != null)
+                        cache.store(key, valid, mv.getTasks());
                 }
             } catch (Exception e) {
                 System.err.println("ERROR: " + e.getMessage());
                 Main.LOG.log(Level.SEVERE, "ERROR", e);
                 e.printStackTrace();
                 System.exit(1);
+            } finally {
+                // Also written when returning early, such as for a cache hit or a quick check.
+                if (metrics != null) {
+                    metrics.getLines().forEach(Main::log);
+                    try (Writer out = Files.newBufferedWriter(metricsFile.toPath(), StandardCharsets.UTF_8)) {
+                        metrics.write(out);
+                    }
+                }
+                // Here so the runs that return early exit with an error as well.
+                if (failed)
+                    System.exit(1);
             }
         } catch (OptionException e) {
             parser.printHelpOn(System.out);
@@ -153,4 +364,8 @@ public class Main {
     private static void log(String line) {
         LOG.warning(line);
     }
+
+    private static void replay(DiagnosticSink sink, ResultCache.Result result) {
+        result.getDiagnostics().values().forEach(diagnostics -> diagnostics.forEach(sink::accept));
+    }
 }
@@ -7,17 +7,30 @@ package net.minecraftforge.mappingverifier;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
-import java.util.Enumeration;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
+import net.minecraftforge.mappingverifier.InheratanceMap.Class;
+import net.minecraftforge.mappingverifier.InheratanceMap.Field;
+import net.minecraftforge.mappingverifier.InheratanceMap.Method;
 import net.minecraftforge.srgutils.IMappingFile;
 
 public class MappingVerifier {
@@ -29,30 +42,331 @@ public class MappingVerifier {
     }};
 
     private IMappingFile map = null;
-    private InheratanceMap inh = new InheratanceMap();
+    private InheratanceMap inh;
     private List<IVerifier> tasks = new ArrayList<>();
+    private List<Function<MappingVerifier, IVerifier>> factories = new ArrayList<>();
+    private IncrementalState state = null;
+    private ExecutorBackend executor = ExecutorBackend.AUTO;
+    private JdkClasses jdk = null;
+    private NestedJars nested = NestedJars.LIBRARY;
+    private Map<String, NestedJars> nestedJars = new TreeMap<>();
+    private DiagnosticSink sink = null;
+    private boolean retainErrors = true;
+    private Set<Long> reported = new HashSet<>();
+    private Map<String, List<Diagnostic>> found = null;
+    private int maxErrors = 0;
+    private int errorCount = 0;
+    private volatile boolean cancelled = false;
+    private MappingVerifier parent = null;
+    private List<MappingVerifier> batch = Collections.emptyList();
+    private final Map<Object, Object> shared = new ConcurrentHashMap<>();
+    private QuickCheck.Tier tier = null;
+    private Predicate<Class> classFilter = null;
+    private String inputs = null;
+    private Metrics metrics = null;
+
+    public MappingVerifier() {
+        this(null);
+    }
+
+    /**
+     * @param store Shares the parsed classes with every other verifier using the same store, used when verifying many versions of the
+     * same jars in one process. Or null to not share them.
+     */
+    public MappingVerifier(ClassStore store) {
+        this.inh = new InheratanceMap(store);
+    }
+
+    /**
+     * @param store See {@link #MappingVerifier(ClassStore)}.
+     * @param libraries A {@link InheratanceMap#freeze() frozen} map, usually of the libraries, that the classes loaded into this verifier are
+     * added on top of. It is not modified, so any number of verifiers can use it at the same time.
+     */
+    public MappingVerifier(ClassStore store, InheratanceMap libraries) {
+        this.inh = new InheratanceMap(store, libraries);
+    }
 
     public void addDefaultTasks() {
-        VERIFIERS.values().forEach(v -> tasks.add(v.apply(this)));
+        VERIFIERS.values().forEach(this::addTask);
     }
 
     public void addTask(String name) {
         Function<MappingVerifier, IVerifier> sup = VERIFIERS.get(name.toLowerCase(Locale.ENGLISH));
         if (sup == null)
             throw new IllegalArgumentException("Unknown task \"" + name + "\" Known: " + VERIFIERS.keySet().stream().collect(Collectors.joining(", ")));
-        tasks.add(sup.apply(this));
+        addTask(sup);
+    }
+
+    private void addTask(Function<MappingVerifier, IVerifier> factory) {
+        tasks.add(factory.apply(this));
+        factories.add(factory);
     }
 
     public void addTask(IVerifier task) {
         tasks.add(task);
+        factories.add(null);
     }
 
+    /**
+     * @return True if there were no errors, false if there were or verifying was {@link #cancel() cancelled}.
+     */
     public boolean verify() {
+        if (isCancelled())
+            return false;
+
+        long start = metrics == null ? 0 : System.nanoTime();
         inh.resolve();
+        if (metrics != null)
+            metrics.time(Metrics.RESOLVE, System.nanoTime() - start);
+        if (state != null)
+            state.prepare(inh, map);
+
+        List<IClassVerifier> visitors = new ArrayList<>();
+        for (IVerifier v : tasks) {
+            if (v instanceof IClassVerifier)
+                visitors.add((IClassVerifier)v);
+        }
+
+        boolean valid = visit(visitors);
+        for (IVerifier v : tasks) {
+            if (!(v instanceof IClassVerifier) && !isCancelled())
+                valid &= process(v);
+        }
+        if (sink != null)
+            sink.flush();
+        return valid && !isCancelled();
+    }
+
+    /**
+     * Verifies several mappings against the classes loaded into this verifier, so the jars are only read and resolved once.
+     * Each mapping gets its own verifier, with new instances of this verifier's tasks, that shares this verifier's inheritance map.
+     * Tasks must have been added by name for this.
+     *
+     * @param parallel If true the mappings are verified concurrently, otherwise they are all verified in a single walk over the classes.
+     * @return A verifier for each mapping, in the same order, whose tasks hold that mapping's errors.
+     */
+    public List<MappingVerifier> verify(List<IMappingFile> maps, boolean parallel) {
+        for (int x = 0; x < tasks.size(); x++) {
+            if (factories.get(x) == null)
+                throw new IllegalStateException("Task " + tasks.get(x).getName() + " was not added by name, and can not be batched");
+        }
+
+        // Nothing is written to a frozen map, so it can be shared.
+        inh.freeze();
+
+        List<MappingVerifier> ret = new ArrayList<>();
+        for (IMappingFile map : maps) {
+            MappingVerifier mv = new MappingVerifier();
+            mv.setMap(map);
+            mv.jdk = jdk;
+            mv.maxErrors = maxErrors;
+            mv.metrics = metrics;
+            mv.parent = this;
+            mv.setInheratance(inh);
+            factories.forEach(mv::addTask);
+            ret.add(mv);
+        }
+        this.batch = ret;
+
+        ExecutorService cpu = executor.getCPU();
+        if (parallel && cpu != null) {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (MappingVerifier mv : ret) {
+                Callable<Boolean> task = mv::verify;
+                futures.add(cpu.submit(task));
+            }
+            for (Future<Boolean> future : futures)
+                get(future);
+        } else {
+            List<IClassVerifier> visitors = new ArrayList<>();
+            for (MappingVerifier mv : ret) {
+                for (IVerifier v : mv.tasks) {
+                    if (v instanceof IClassVerifier)
+                        visitors.add((IClassVerifier)v);
+                }
+            }
+
+            visit(visitors);
+            for (MappingVerifier mv : ret) {
+                for (IVerifier v : mv.tasks) {
+                    if (!(v instanceof IClassVerifier) && !mv.isCancelled())
+                        mv.process(v);
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Verifies a chain of mappings, each one mapping the names produced by the one before it. Such as obf to SRG, then SRG to named.
+     * Every stage is verified against the bytecode through its composition with the stages before it, so the last stage verifies the
+     * fully composed mapping. All stages are verified in a single walk over the classes.
+     *
+     * @return A verifier for each stage, in the same order, whose tasks hold the errors of the mapping composed up to that stage.
+     */
+    public List<MappingVerifier> verifyChain(List<IMappingFile> stages) {
+        List<IMappingFile> composed = new ArrayList<>();
+        IMappingFile current = null;
+        for (IMappingFile stage : stages) {
+            current = current == null ? stage : current.chain(stage);
+            composed.add(current);
+        }
+        return verify(composed, false);
+    }
+
+    /**
+     * Walks every owned class a single time, dispatching each class, member and reference to all of the verifiers.
+     * The inheritance map must already be resolved. Stops before the next class once this verifier is {@link #cancel() cancelled},
+     * without calling {@link IClassVerifier#end()}.
+     */
+    public boolean visit(Collection<? extends IClassVerifier> visitors) {
+        if (visitors.isEmpty())
+            return true;
+
+        long visitStart = metrics == null ? 0 : System.nanoTime();
+        if (metrics != null)
+            visitors = metrics.wrap(visitors);
+
+        for (IClassVerifier v : visitors) {
+            FlightEvents.Span event = FlightEvents.task(v.getName(), "begin");
+            v.begin();
+            event.end(errorCount);
+        }
+
         boolean valid = true;
-        for (IVerifier v : tasks)
-            valid &= v.process();
-        return valid;
+        List<IClassVerifier> active = new ArrayList<>(visitors.size());
+        for (Class cls : inh.getOwned()) {
+            if (isCancelled())
+                break;
+            if (!isSelected(cls))
+                continue;
+
+            long classStart = metrics == null ? 0 : System.nanoTime();
+            active.clear();
+            for (IClassVerifier v : visitors) {
+                List<Diagnostic> previous = state == null ? null : state.getDiagnostics(v, cls);
+                if (previous == null) {
+                    active.add(v);
+                } else {
+                    // Only the new ones within the error budget are kept, the same as if the class had been visited.
+                    List<Diagnostic> kept = new ArrayList<>(previous.size());
+                    for (Diagnostic diagnostic : previous) {
+                        if (report(diagnostic) == Reported.NEW)
+                            kept.add(diagnostic);
+                    }
+                    v.restore(cls, kept);
+                    state.record(v, cls, previous);
+                    valid &= previous.isEmpty();
+                }
+            }
+
+            if (active.isEmpty()) {
+                if (metrics != null)
+                    metrics.count(Metrics.CLASSES_RESTORED, 1);
+                continue;
+            }
+
+            // Everything the class reports is saved, duplicates included, as the class they duplicate may not report them next time.
+            if (state != null)
+                found = new HashMap<>();
+
+            FlightEvents.Span event = FlightEvents.verifyClass(cls.name, active.size());
+            for (IClassVerifier v : active)
+                v.visitClass(cls);
+
+            for (Field field : cls.getFields().values()) {
+                for (IClassVerifier v : active)
+                    v.visitField(cls, field);
+            }
+
+            for (Method method : cls.getMethods().values()) {
+                for (IClassVerifier v : active)
+                    v.visitMethod(cls, method);
+            }
+
+            for (Reference ref : cls.getReferences()) {
+                for (IClassVerifier v : active)
+                    v.visitReference(cls, ref);
+            }
+
+            for (IClassVerifier v : active)
+                v.visitEnd(cls);
+            event.end(cls.getReferences().size());
+
+            if (metrics != null) {
+                metrics.visited(cls, System.nanoTime() - classStart);
+                metrics.count(Metrics.CLASSES_VISITED, 1);
+                metrics.count(Metrics.REFERENCES, cls.getReferences().size());
+            }
+
+            if (sink != null)
+                sink.flush();
+
+            if (state != null) {
+                for (IClassVerifier v : active) {
+                    if (v.isIncremental())
+                        state.record(v, cls, found.getOrDefault(v.getName(), Collections.emptyList()));
+                }
+                found = null;
+            }
+        }
+
+        for (IClassVerifier v : visitors) {
+            if (isCancelled())
+                break;
+            FlightEvents.Span event = FlightEvents.task(v.getName(), "end");
+            valid &= v.end();
+            event.end(errorCount);
+        }
+        if (sink != null)
+            sink.flush();
+        if (metrics != null)
+            metrics.time(Metrics.VISIT, System.nanoTime() - visitStart);
+        return valid && !isCancelled();
+    }
+
+    private boolean process(IVerifier task) {
+        FlightEvents.Span event = FlightEvents.task(task.getName(), "process");
+        long start = metrics == null ? 0 : System.nanoTime();
+        boolean ret = task.process();
+        if (metrics != null)
+            metrics.time(Metrics.TASK + task.getName(), System.nanoTime() - start);
+        event.end(errorCount);
+        return ret;
+    }
+
+    /**
+     * Gets something that only depends on the inheritance map, such as how its classes are linked, and not on the mapping.
+     * When verifying several mappings at once the map is frozen, so it's computed once and shared by every verifier of the batch.
+     * Otherwise it's computed every time, as the map can still change. The factory may be called from any thread.
+     */
+    @SuppressWarnings("unchecked")
+    <T> T getShared(Object key, Supplier<T> factory) {
+        if (parent == null)
+            return factory.get();
+        return (T)parent.shared.computeIfAbsent(key, k -> factory.get());
+    }
+
+    /**
+     * @return The tier of a {@link QuickCheck} that is running, or null for a full verification.
+     */
+    QuickCheck.Tier getTier() {
+        return tier;
+    }
+
+    void setTier(QuickCheck.Tier tier) {
+        this.tier = tier;
+    }
+
+    /**
+     * Only visits the owned classes accepted by this filter, or every one if it's null.
+     */
+    void setClassFilter(Predicate<Class> filter) {
+        this.classFilter = filter;
+    }
+
+    boolean isSelected(Class cls) {
+        return classFilter == null || classFilter.test(cls);
     }
 
     public List<IVerifier> getTasks() {
@@ -67,6 +381,53 @@ public class MappingVerifier {
         return inh;
     }
 
+    /**
+     * @return A stable fingerprint of these inputs and the enabled tasks, used as the key of a {@link ResultCache}.
+     */
+    public String fingerprint(File jar, File map, Collection<File> libs) throws IOException {
+        return ResultCache.fingerprint(jar, map, libs, describeSettings(), tasks.stream().map(IVerifier::getName).collect(Collectors.toList()));
+    }
+
+    // Everything other then the inputs that changes which classes are read, and so the result.
+    private String describeSettings() {
+        StringBuilder buf = new StringBuilder();
+        buf.append("JDK: ").append(inh.getJdk().describe()).append('\n');
+        buf.append("Nested: ").append(nested).append('\n');
+        nestedJars.forEach((name, mode) -> buf.append("Nested: ").append(name).append(' ').append(mode).append('\n'));
+        return buf.toString();
+    }
+
+    /**
+     * Enables incremental verification, using the state a previous run saved to this directory.
+     * If that state was built from the same jar and libraries, its inheritance map is restored and the inputs don't need to be loaded.
+     * Otherwise they must be loaded after this, so their classes are hashed.
+     *
+     * @return True if the inheritance map was restored.
+     */
+    public boolean loadState(File dir, File jar, Collection<File> libs) throws IOException {
+        this.state = new IncrementalState(dir);
+        this.inputs = IncrementalState.describeInputs(jar, libs, describeSettings());
+        InheratanceMap saved = state.load(inputs);
+        if (saved == null) {
+            // The inputs are loaded again, and their hashes are saved for the next run.
+            inh.setHashing(true);
+            return false;
+        }
+        setInheratance(saved);
+        return true;
+    }
+
+    /**
+     * Saves the state of this run, so the next one can be incremental. Must be called after {@link #verify()}.
+     */
+    public void saveState() throws IOException {
+        if (state == null)
+            throw new IllegalStateException("Incremental verification is not enabled");
+        if (isCancelled())
+            throw new IllegalStateException("Verifying was cancelled, so the results are incomplete");
+        state.save(inputs, inh, map);
+    }
+
     public void loadMap(File mapFile) throws IOException {
         this.map = IMappingFile.load(mapFile);
     }
@@ -75,38 +436,277 @@ public class MappingVerifier {
         this.map = IMappingFile.load(mapStream);
     }
 
+    public void setExecutor(ExecutorBackend executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Reads the JDK classes of the specified Java release, such as 8, instead of the ones of the JDK we are running on.
+     */
+    public void setRelease(int release) {
+        this.jdk = JdkClasses.forRelease(release);
+        inh.setJdk(jdk);
+    }
+
+    /**
+     * Sets how the jars nested in loaded jars are loaded, defaults to {@link NestedJars#LIBRARY}.
+     */
+    public void setNestedJars(NestedJars mode) {
+        this.nested = mode;
+    }
+
+    /**
+     * Overrides how a single nested jar is loaded.
+     * @param name The file name of the nested jar, such as {@code foo-1.0.jar}, or its full path in the jar it is nested in.
+     */
+    public void setNestedJars(String name, NestedJars mode) {
+        this.nestedJars.put(name, mode);
+    }
+
+    /**
+     * Sends every error to this sink as soon as it's found. Errors that were already reported are left out, here and from {@link IVerifier#getErrors()}.
+     */
+    public void setSink(DiagnosticSink sink) {
+        this.sink = sink;
+    }
+
+    boolean hasSink() {
+        return sink != null;
+    }
+
+    /**
+     * If false, errors are only sent to the {@link #setSink(DiagnosticSink) sink}, and {@link IVerifier#getErrors()} stays empty.
+     * So memory doesn't grow with the number of errors. Incremental runs save what every class reported on their own, so they don't need them.
+     */
+    public void setRetainErrors(boolean retain) {
+        this.retainErrors = retain;
+    }
+
+    boolean isRetainingErrors() {
+        return retainErrors;
+    }
+
+    /**
+     * Stops verifying once this many errors were found, {@link #cancel() cancelling} the rest of the run. Errors after that are dropped.
+     * So a broken mapping fails after a fraction of a full run, with 1 failing on the first error. 0, the default, means no limit.
+     * When verifying several mappings at once, each one gets this budget, and the run stops once all of them are out of it.
+     */
+    public void setMaxErrors(int max) {
+        if (max < 0)
+            throw new IllegalArgumentException("Invalid max errors: " + max);
+        this.maxErrors = max;
+    }
+
+    /**
+     * Asks the running load or verify to stop, which they do at the next class. Can be called from any thread.
+     * The errors found until then are kept, and the sink is still flushed, but they are incomplete.
+     */
+    public void cancel() {
+        this.cancelled = true;
+        if (parent != null && parent.batch.stream().allMatch(MappingVerifier::isCancelled))
+            parent.cancel();
+    }
+
+    public boolean isCancelled() {
+        return cancelled || (parent != null && parent.isCancelled());
+    }
+
+    /**
+     * @return The number of errors reported so far, not counting duplicates or ones dropped because the {@link #setMaxErrors(int) budget} ran out.
+     */
+    public int getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * What happened to a diagnostic that was {@link MappingVerifier#report(Diagnostic) reported}.
+     */
+    enum Reported {
+        /** It was counted and sent to the sink, and should be kept. */
+        NEW,
+        /** The same diagnostic was already reported, so it's left out. */
+        DUPLICATE,
+        /** The error budget ran out, so it's left out. */
+        DROPPED
+    }
+
+    Reported report(Diagnostic diagnostic) {
+        if (found != null)
+            found.computeIfAbsent(diagnostic.getTask(), k -> new ArrayList<>()).add(diagnostic);
+        if (maxErrors > 0 && errorCount >= maxErrors)
+            return Reported.DROPPED;
+        if (!reported.add(diagnostic.fingerprint()))
+            return Reported.DUPLICATE;
+
+        errorCount++;
+        if (sink != null)
+            sink.accept(diagnostic);
+        if (maxErrors > 0 && errorCount >= maxErrors) {
+            Main.LOG.info("Reached " + maxErrors + " errors, stopping");
+            cancel();
+        }
+        return Reported.NEW;
+    }
+
+    /**
+     * Collects timings and counters of every phase into this, or nothing if it's null, the default.
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
     public void setMap(IMappingFile map) {
         this.map = map;
     }
 
+    /**
+     * Replaces the inheritance map, for example with one already containing the libraries. Owned jars can still be loaded into it.
+     */
+    public void setInheratance(InheratanceMap inh) {
+        this.inh = inh;
+        if (jdk != null)
+            inh.setJdk(jdk);
+    }
+
     public void loadLibrary(File input) throws IOException {
-        loadJar(input, false);
+        try (ClassProvider provider = ClassProvider.of(input)) {
+            load(input.getPath(), provider, false);
+        }
     }
 
     public void loadJar(File input) throws IOException {
-        loadJar(input, true);
-    }
-
-    private void loadJar(File input, boolean owned) throws IOException {
-        try (ZipFile zip = new ZipFile(input)) {
-            Enumeration<? extends ZipEntry> itr = zip.entries();
-            while (itr.hasMoreElements()) {
-                ZipEntry e = itr.nextElement();
-                if (e.isDirectory()
-                   || !e.getName().endsWith(".class") // Classes Only
-                   || e.getName().startsWith("META-INF/") // No Multi-Release support
-                   || e.getName().equals("module-info.class")
-                ) {
-                    continue;
-                }
+        try (ClassProvider provider = ClassProvider.of(input)) {
+            load(input.getPath(), provider, true);
+        }
+    }
+
+    public void loadLibrary(ClassProvider provider) throws IOException {
+        load(null, provider, false);
+    }
+
+    public void loadJar(ClassProvider provider) throws IOException {
+        load(null, provider, true);
+    }
+
+    private void load(String jar, ClassProvider provider, boolean owned) throws IOException {
+        if (metrics == null) {
+            read(jar, provider, owned);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            read(jar, provider, owned);
+        } finally {
+            metrics.time(owned ? Metrics.LOAD_OWNED : Metrics.LOAD_LIBRARY, System.nanoTime() - start);
+        }
+    }
+
+    // The nested jars get events of their own, but are timed as part of the jar they are in.
+    private void read(String jar, ClassProvider provider, boolean owned) throws IOException {
+        FlightEvents.Span event = FlightEvents.loadJar(jar, owned);
+        event.end(read(provider, owned));
+    }
+
+    /**
+     * @return The number of classes in the provider, not counting nested jars.
+     */
+    private int read(ClassProvider provider, boolean owned) throws IOException {
+        List<String> names = provider.getClassNames();
 
+        ExecutorService io = executor.getIO();
+        if (io == null) {
+            for (String name : names) {
+                if (isCancelled())
+                    return names.size();
                 try {
-                    Main.LOG.finest("Loading: " + e.getName());
-                    inh.processClass(zip.getInputStream(e), owned);
-                } catch (IOException e1) {
-                    e1.printStackTrace();
+                    Main.LOG.finest("Loading: " + name);
+                    byte[] data = provider.getClassBytes(name);
+                    if (data != null) {
+                        inh.processClass(data, owned);
+                        countRead(data, owned);
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
                 }
             }
+            loadNested(provider, owned);
+            return names.size();
+        }
+
+        // Read and parse concurrently, but add them to the map in the same order as if it was done serially.
+        List<Future<InheratanceMap.Parsed>> futures = new ArrayList<>(names.size());
+        for (String name : names) {
+            futures.add(io.submit(() -> {
+                Main.LOG.finest("Loading: " + name);
+                byte[] data = provider.getClassBytes(name);
+                if (data == null)
+                    return null;
+                countRead(data, owned);
+                return inh.parse(data, owned);
+            }));
+        }
+
+        for (Future<InheratanceMap.Parsed> future : futures) {
+            if (isCancelled()) {
+                futures.forEach(f -> f.cancel(false));
+                return names.size();
+            }
+            try {
+                InheratanceMap.Parsed parsed = get(future);
+                if (parsed != null)
+                    inh.processClass(parsed);
+            } catch (UncheckedIOException e) {
+                e.getCause().printStackTrace();
+            }
+        }
+
+        loadNested(provider, owned);
+        return names.size();
+    }
+
+    private void loadNested(ClassProvider provider, boolean owned) throws IOException {
+        for (String path : provider.getNestedJars()) {
+            if (isCancelled())
+                return;
+            NestedJars mode = nestedJars.get(path);
+            if (mode == null)
+                mode = nestedJars.getOrDefault(path.substring(path.lastIndexOf('/') + 1), nested);
+            if (mode == NestedJars.SKIP)
+                continue;
+
+            Main.LOG.fine("Loading nested: " + path);
+            try (ClassProvider child = provider.openNested(path)) {
+                read(path, child, owned && mode == NestedJars.INHERIT);
+            }
+        }
+    }
+
+    private void countRead(byte[] data, boolean owned) {
+        if (metrics != null) {
+            metrics.count(owned ? Metrics.CLASSES_OWNED : Metrics.CLASSES_LIBRARY, 1);
+            metrics.count(Metrics.BYTES_READ, data.length);
+        }
+    }
+
+    private static <T> T get(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw new UncheckedIOException((IOException)cause);
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException)cause;
+            if (cause instanceof Error)
+                throw (Error)cause;
+            throw new IllegalStateException(cause);
         }
     }
 }
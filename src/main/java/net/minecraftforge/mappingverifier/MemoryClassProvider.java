@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) Forge Development LLC
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+package net.minecraftforge.mappingverifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Classes that are already in memory, for example just compiled or transformed by a build tool.
+ */
+class MemoryClassProvider implements ClassProvider {
+    private final Map<String, byte[]> classes;
+
+    MemoryClassProvider(Map<String, byte[]> classes) {
+        this.classes = classes;
+    }
+
+    @Override
+    public List<String> getClassNames() {
+        List<String> ret = new ArrayList<>();
+        for (String name : classes.keySet()) {
+            if (ClassProvider.isClass(name + ".class"))
+                ret.add(name);
+        }
+        return ret;
+    }
+
+    @Override
+    public byte[] getClassBytes(String name) {
+        return classes.get(name);
+    }
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright (c) Forge Development LLC
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+package net.minecraftforge.mappingverifier;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import net.minecraftforge.mappingverifier.InheratanceMap.Class;
+import net.minecraftforge.mappingverifier.InheratanceMap.Field;
+import net.minecraftforge.mappingverifier.InheratanceMap.Method;
+
+/**
+ * Timings and counters of every phase of a run, and the classes that took the longest to verify. See {@link MappingVerifier#setMetrics(Metrics)}.
+ * Nothing is measured unless this is set, so it costs nothing when it's not wanted.
+ * <p>
+ * Phases are timed in total, so loading several jars, or verifying several mappings, adds up. Every part of it can be updated from any thread.
+ */
+public class Metrics {
+    /** Reading and parsing the owned jars, and the libraries. */
+    public static final String LOAD_OWNED = "load.owned";
+    public static final String LOAD_LIBRARY = "load.library";
+    public static final String RESOLVE = "resolve";
+    /** Walking the owned classes, all visiting tasks together. */
+    public static final String VISIT = "visit";
+    /** Every phase of a single task, prefixed to its name. */
+    public static final String TASK = "task.";
+
+    public static final String CLASSES_OWNED = "classes.owned";
+    public static final String CLASSES_LIBRARY = "classes.library";
+    /** The size of every class read, after it was inflated. */
+    public static final String BYTES_READ = "bytes.read";
+    public static final String CLASSES_VISITED = "classes.visited";
+    /** Classes that weren't visited, as their errors were reused from the previous incremental run. */
+    public static final String CLASSES_RESTORED = "classes.restored";
+    public static final String REFERENCES = "references";
+    public static final String OVERRIDE_GROUPS = "override.groups";
+    public static final String CACHE_HITS = "cache.hits";
+    public static final String CACHE_MISSES = "cache.misses";
+
+    private final int top;
+    private final Map<String, LongAdder> nanos = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final PriorityQueue<Cost> expensive = new PriorityQueue<>(Comparator.comparingLong((Cost c) -> c.nanos).thenComparing(c -> c.cls, Comparator.reverseOrder()));
+
+    public Metrics() {
+        this(10);
+    }
+
+    /**
+     * @param top The number of most expensive classes to keep.
+     */
+    public Metrics(int top) {
+        this.top = top;
+    }
+
+    public void time(String phase, long nanos) {
+        this.nanos.computeIfAbsent(phase, k -> new LongAdder()).add(nanos);
+    }
+
+    public void count(String counter, long amount) {
+        this.counters.computeIfAbsent(counter, k -> new LongAdder()).add(amount);
+    }
+
+    public long getNanos(String phase) {
+        LongAdder ret = this.nanos.get(phase);
+        return ret == null ? 0 : ret.sum();
+    }
+
+    public long getCount(String counter) {
+        LongAdder ret = this.counters.get(counter);
+        return ret == null ? 0 : ret.sum();
+    }
+
+    /**
+     * Records how long a class took to verify, by every visiting task together.
+     */
+    void visited(Class cls, long nanos) {
+        synchronized (expensive) {
+            if (expensive.size() < top) {
+                expensive.add(new Cost(cls.name, nanos));
+            } else if (top > 0 && nanos > expensive.peek().nanos) {
+                expensive.poll();
+                expensive.add(new Cost(cls.name, nanos));
+            }
+        }
+    }
+
+    /**
+     * @return The most expensive classes, most expensive first.
+     */
+    public List<String> getExpensive() {
+        List<String> ret = new ArrayList<>();
+        for (Cost cost : sortedCosts())
+            ret.add(String.format(Locale.ENGLISH, "%s %.3fms", cost.cls, cost.nanos / 1_000_000.0));
+        return ret;
+    }
+
+    private List<Cost> sortedCosts() {
+        List<Cost> ret;
+        synchronized (expensive) {
+            ret = new ArrayList<>(expensive);
+        }
+        ret.sort(expensive.comparator().reversed());
+        return ret;
+    }
+
+    /**
+     * Wraps the visitors so the time spent in each of them is recorded under {@link #TASK} and its name.
+     */
+    List<IClassVerifier> wrap(Collection<? extends IClassVerifier> visitors) {
+        List<IClassVerifier> ret = new ArrayList<>(visitors.size());
+        for (IClassVerifier v : visitors)
+            ret.add(new Timed(v, this.nanos.computeIfAbsent(TASK + v.getName(), k -> new LongAdder())));
+        return ret;
+    }
+
+    /**
+     * @return A summary to print, each phase with its time and throughput, then the counters and the most expensive classes.
+     */
+    public List<String> getLines() {
+        List<String> ret = new ArrayList<>();
+        ret.add("Metrics:");
+        for (Map.Entry<String, Long> entry : sorted(nanos).entrySet()) {
+            String line = String.format(Locale.ENGLISH, "  %-26s %10.1fms", entry.getKey(), entry.getValue() / 1_000_000.0);
+            long classes = classesOf(entry.getKey());
+            if (classes > 0 && entry.getValue() > 0)
+                line += String.format(Locale.ENGLISH, "  %.0f classes/s", classes * 1_000_000_000.0 / entry.getValue());
+            ret.add(line);
+        }
+        for (Map.Entry<String, Long> entry : sorted(counters).entrySet())
+            ret.add(String.format(Locale.ENGLISH, "  %-26s %10d", entry.getKey(), entry.getValue()));
+        List<String> classes = getExpensive();
+        if (!classes.isEmpty()) {
+            ret.add("  Most expensive classes:");
+            classes.forEach(line -> ret.add("    " + line));
+        }
+        return ret;
+    }
+
+    /**
+     * Writes everything as a single JSON object: {@code phases} in milliseconds, {@code throughput} in classes per second,
+     * {@code counters}, and {@code expensive} classes each with its {@code class} and {@code ms}. The writer is not closed.
+     */
+    public void write(Writer out) throws IOException {
+        StringBuilder buf = new StringBuilder();
+        buf.append("{\n  \"phases\": {");
+        int x = 0;
+        for (Map.Entry<String, Long> entry : sorted(nanos).entrySet()) {
+            buf.append(x++ == 0 ? "\n" : ",\n").append("    ");
+            JsonLinesSink.quote(buf, entry.getKey());
+            buf.append(": ").append(String.format(Locale.ENGLISH, "%.3f", entry.getValue() / 1_000_000.0));
+        }
+        buf.append("\n  },\n  \"throughput\": {");
+        x = 0;
+        for (Map.Entry<String, Long> entry : sorted(nanos).entrySet()) {
+            long classes = classesOf(entry.getKey());
+            if (classes <= 0 || entry.getValue() <= 0)
+                continue;
+            buf.append(x++ == 0 ? "\n" : ",\n").append("    ");
+            JsonLinesSink.quote(buf, entry.getKey());
+            buf.append(": ").append(String.format(Locale.ENGLISH, "%.1f", classes * 1_000_000_000.0 / entry.getValue()));
+        }
+        buf.append("\n  },\n  \"counters\": {");
+        x = 0;
+        for (Map.Entry<String, Long> entry : sorted(counters).entrySet()) {
+            buf.append(x++ == 0 ? "\n" : ",\n").append("    ");
+            JsonLinesSink.quote(buf, entry.getKey());
+            buf.append(": ").append(entry.getValue());
+        }
+        buf.append("\n  },\n  \"expensive\": [");
+        x = 0;
+        for (Cost cost : sortedCosts()) {
+            buf.append(x++ == 0 ? "\n" : ",\n").append("    {\"class\": ");
+            JsonLinesSink.quote(buf, cost.cls);
+            buf.append(", \"ms\": ").append(String.format(Locale.ENGLISH, "%.3f", cost.nanos / 1_000_000.0)).append('}');
+        }
+        buf.append("\n  ]\n}\n");
+        out.write(buf.toString());
+    }
+
+    // The number of classes a phase worked on, for its throughput, or 0 if it doesn't make sense for it.
+    private long classesOf(String phase) {
+        switch (phase) {
+            case LOAD_OWNED:   return getCount(CLASSES_OWNED);
+            case LOAD_LIBRARY: return getCount(CLASSES_LIBRARY);
+            case VISIT:        return getCount(CLASSES_VISITED);
+            default:           return 0;
+        }
+    }
+
+    private static Map<String, Long> sorted(Map<String, LongAdder> values) {
+        Map<String, Long> ret = new TreeMap<>();
+        values.forEach((k, v) -> ret.put(k, v.sum()));
+        return ret;
+    }
+
+    private static class Cost {
+        private final String cls;
+        private final long nanos;
+
+        private Cost(String cls, long nanos) {
+            this.cls = cls;
+            this.nanos = nanos;
+        }
+    }
+
+    /*
+     * Times every call into a visitor. Everything else is passed through, the name included so incremental state still matches.
+     */
+    private static class Timed implements IClassVerifier {
+        private final IClassVerifier task;
+        private final LongAdder nanos;
+
+        private Timed(IClassVerifier task, LongAdder nanos) {
+            this.task = task;
+            this.nanos = nanos;
+        }
+
+        @Override
+        public String getName() {
+            return task.getName();
+        }
+
+        @Override
+        public List<String> getErrors() {
+            return task.getErrors();
+        }
+
+        @Override
+        public List<Diagnostic> getDiagnostics() {
+            return task.getDiagnostics();
+        }
+
+        @Override
+        public boolean process() {
+            long start = System.nanoTime();
+            boolean ret = task.process();
+            nanos.add(System.nanoTime() - start);
+            return ret;
+        }
+
+        @Override
+        public void begin() {
+            long start = System.nanoTime();
+            task.begin();
+            nanos.add(System.nanoTime() - start);
+        }
+
+        @Override
+        public void visitClass(Class cls) {
+            long start = System.nanoTime();
+            task.visitClass(cls);
+            nanos.add(System.nanoTime() - start);
+        }
+
+        @Override
+        public void visitField(Class cls, Field field) {
+            long start = System.nanoTime();
+            task.visitField(cls, field);
+            nanos.add(System.nanoTime() - start);
+        }
+
+        @Override
+        public void visitMethod(Class cls, Method method) {
+            long start = System.nanoTime();
+            task.visitMethod(cls, method);
+            nanos.add(System.nanoTime() - start);
+        }
+
+        @Override
+        public void visitReference(Class cls, Reference ref) {
+            long start = System.nanoTime();
+            task.visitReference(cls, ref);
+            nanos.add(System.nanoTime() - start);
+        }
+
+        @Override
+        public void visitEnd(Class cls) {
+            long start = System.nanoTime();
+            task.visitEnd(cls);
+            nanos.add(System.nanoTime() - start);
+        }
+
+        @Override
+        public boolean isIncremental() {
+            return task.isIncremental();
+        }
+
+        @Override
+        public void restore(Class cls, List<Diagnostic> diagnostics) {
+            task.restore(cls, diagnostics);
+        }
+
+        @Override
+        public boolean end() {
+            long start = System.nanoTime();
+            boolean ret = task.end();
+            nanos.add(System.nanoTime() - start);
+            return ret;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) Forge Development LLC
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+package net.minecraftforge.mappingverifier;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Classes of a jar nested in another one, streamed from the outer jar into memory in a single pass. Nothing is extracted to disk.
+ * Jars nested in it are kept as bytes, and only read when they are opened.
+ */
+class NestedClassProvider implements ClassProvider {
+    private final Map<String, byte[]> classes = new LinkedHashMap<>();
+    private final Map<String, byte[]> nested = new LinkedHashMap<>();
+
+    NestedClassProvider(InputStream stream) throws IOException {
+        try (ZipInputStream zip = new ZipInputStream(stream)) {
+            ZipEntry e;
+            while ((e = zip.getNextEntry()) != null) {
+                String name = e.getName();
+                if (e.isDirectory())
+                    continue;
+                if (ClassProvider.isClass(name))
+                    classes.put(name.substring(0, name.length() - 6), InheratanceMap.readAll(zip));
+                else if (ClassProvider.isNestedJar(name))
+                    nested.put(name, InheratanceMap.readAll(zip));
+            }
+        }
+    }
+
+    @Override
+    public List<String> getClassNames() {
+        return new ArrayList<>(classes.keySet());
+    }
+
+    @Override
+    public byte[] getClassBytes(String name) {
+        return classes.get(name);
+    }
+
+    @Override
+    public List<String> getNestedJars() {
+        return new ArrayList<>(nested.keySet());
+    }
+
+    @Override
+    public ClassProvider openNested(String path) throws IOException {
+        byte[] data = nested.get(path);
+        if (data == null)
+            throw new FileNotFoundException(path);
+        return new NestedClassProvider(new ByteArrayInputStream(data));
+    }
+}
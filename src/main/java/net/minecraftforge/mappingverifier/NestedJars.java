@@ -0,0 +1,17 @@
+/*
+ * Copyright (c) Forge Development LLC
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+package net.minecraftforge.mappingverifier;
+
+/**
+ * How {@link MappingVerifier} loads the jars nested in a loaded jar, under {@value ClassProvider#NESTED_JARS}.
+ */
+public enum NestedJars {
+    /** Nested jars are not loaded. */
+    SKIP,
+    /** Nested jars are loaded as libraries, even when they are nested in an owned jar. */
+    LIBRARY,
+    /** Nested jars are loaded the same way as the jar they are in, so their classes are verified when it's owned. */
+    INHERIT;
+}
@@ -8,6 +8,7 @@ import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
@@ -18,6 +19,7 @@ import java.util.Queue;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import net.minecraftforge.mappingverifier.InheratanceMap.Class;
@@ -27,86 +29,169 @@ import net.minecraftforge.mappingverifier.InheratanceMap.Method.Bounce;
 import net.minecraftforge.mappingverifier.InheratanceMap.Node;
 import net.minecraftforge.srgutils.IMappingFile;
 import net.minecraftforge.srgutils.IMappingFile.IClass;
+import net.minecraftforge.srgutils.IMappingFile.IMethod;
+
+public class OverrideNames extends SimpleVerifier implements IClassVerifier {
+    private Set<String> renamed = new HashSet<>();
+    private IMappingFile reverse;
+    private Map<Class, LinkInfo> links;
+    private Map<Class, ExposedMethods> cache;
+    private boolean success;
+    private IClass info;
 
-public class OverrideNames extends SimpleVerifier {
     protected OverrideNames(MappingVerifier verifier) {
         super(verifier);
     }
 
     @Override
     public boolean process() {
+        return verifier.visit(Collections.singletonList(this));
+    }
+
+    @Override
+    public boolean isIncremental() {
+        return true;
+    }
+
+    @Override
+    public void begin() {
         Main.LOG.info("Override Names:");
-        InheratanceMap inh = verifier.getInheratance();
         IMappingFile map = verifier.getMappings();
-        IMappingFile reverse = map.reverse();
-        boolean ret = true;
-        ret  = checkNormal(inh, map, reverse);
-        ret &= checkInterfaces(inh);
-        //ret &= checkDeep(inh);
-        ret &= checkPerLevel(inh);
+        this.reverse = map.reverse();
+        this.renamed = findRenamed(map);
+        // The links are only needed to check whole hierarchies, which the mapping only tier doesn't.
+        // Neither depends on the mapping, so a batch of mappings shares them.
+        this.links = verifier.getTier() == QuickCheck.Tier.MAPPING ? null : verifier.getShared(LinkInfo.class, this::buildLinks);
+        this.cache = verifier.getShared(ExposedMethods.class, ConcurrentHashMap::new);
+        this.success = true;
+    }
+
+    @Override
+    public void visitClass(Class cls) {
+        IMappingFile map = verifier.getMappings();
+        Main.LOG.finest("  Processing: " + map.remapClass(cls.name));
+        this.info = map.getClass(cls.name);
+    }
+
+    @Override
+    public void visitField(Class cls, Field field) {
+        if (verifier.getTier() != QuickCheck.Tier.SAMPLED)
+            success &= checkNormal(cls, field);
+    }
+
+    @Override
+    public void visitMethod(Class cls, Method method) {
+        if (verifier.getTier() != QuickCheck.Tier.SAMPLED)
+            success &= checkNormal(cls, method);
+    }
+
+    @Override
+    public void visitEnd(Class cls) {
+        //success &= checkDeep(inh);
+        if (verifier.getTier() != QuickCheck.Tier.MAPPING)
+            success &= checkPerLevel(verifier.getInheratance(), cls);
+    }
+
+    @Override
+    public boolean end() {
+        if (verifier.getTier() != QuickCheck.Tier.MAPPING)
+            success &= checkInterfaces(verifier.getInheratance());
+        return success;
+    }
+
+    /*
+     * Gathers the name and descriptor of every method that the mapping gives a different name, as well as the
+     * name they are given. If a method's name and descriptor isn't in here, then nothing with that signature is
+     * renamed anywhere, and nothing is renamed to it. So every override of it keeps the same name and can't
+     * shade anything new. This is the case for most things that override library methods, like toString, equals and run.
+     */
+    private static Set<String> findRenamed(IMappingFile map) {
+        Set<String> ret = new HashSet<>();
+        for (IClass cls : map.getClasses()) {
+            for (IMethod mtd : cls.getMethods()) {
+                if (mtd.getOriginal().equals(mtd.getMapped()))
+                    continue;
+                ret.add(mtd.getOriginal() + mtd.getDescriptor());
+                ret.add(mtd.getMapped() + mtd.getDescriptor());
+            }
+        }
         return ret;
     }
 
+    private boolean isRenamed(Method mtd) {
+        return renamed.contains(mtd.getSimple());
+    }
+
+    private static boolean isSrgName(String name) {
+        return name.startsWith("func_") || name.startsWith("m_");
+    }
+
     // This one we check every method defined in a class, walking its parent tree.
     // Catches simple subclasses who define the override.
-    private boolean checkNormal(InheratanceMap inh, IMappingFile map, IMappingFile reverse) {
+    private boolean checkNormal(Class cls, Field entry) {
+        if (Modifier.isStatic(entry.access))
+            return true;
+
+        IMappingFile map = verifier.getMappings();
+        String newName = info.remapField(entry.name);
+
         boolean success = true;
-        for (Class cls : inh.getOwned()) {
-            Main.LOG.finest("  Processing: " + map.remapClass(cls.name));
-            IClass info = map.getClass(cls.name);
-            for (Field entry : cls.getFields().values()) {
-                if (Modifier.isStatic(entry.access))
-                    continue;
+        for (Class parent : cls.getStack()) {
+            IClass pinfo = reverse.getClass(map.remapClass(parent.name));
+            Node f = parent.getField(pinfo == null ? newName : pinfo.remapField(newName));
+            if (f != null && !Modifier.isPrivate(f.access)) {
+                diagnostic("Shade").at(cls.name).member(entry.name).mapped(newName)
+                    .report("  Shade: %s/%s %s/%s %s", cls.name, entry.name, pinfo.getOriginal(), f.name, newName);
+                success = false;
+                continue;
+            }
+        }
+
+        return success;
+    }
 
-                String newName = info.remapField(entry.name);
+    private boolean checkNormal(Class cls, Method mt) {
+        if (Modifier.isStatic(mt.access) || mt.name.startsWith("<"))
+            return true;
 
-                for (Class parent : cls.getStack()) {
-                    IClass pinfo = reverse.getClass(map.remapClass(parent.name));
-                    Node f = parent.getField(pinfo == null ? newName : pinfo.remapField(newName));
-                    if (f != null && !Modifier.isPrivate(f.access)) {
-                        error("  Shade: %s/%s %s/%s %s", cls.name, entry.name, pinfo.getOriginal(), f.name, newName);
+        // Same name everywhere in the tree, the only thing that can go wrong is the private SRG name check below.
+        if (!isRenamed(mt) && !isSrgName(mt.name))
+            return true;
+
+        IMappingFile map = verifier.getMappings();
+        String newName = info.remapMethod(mt.name, mt.desc);
+        String newSignature = map.remapDescriptor(mt.desc);
+
+        boolean success = true;
+        for (Class parent : cls.getStack()) {
+            IClass pinfo = map.getClass(parent.name);
+            IClass rinfo = pinfo == null ? null : reverse.getClass(pinfo.getMapped());
+            String unmapped = rinfo == null ? newName : rinfo.remapMethod(newName, newSignature);
+            Node m = parent.getMethod(unmapped, mt.desc);
+            if (m != null) {//Parent has same mapped name
+                if (Modifier.isPrivate(m.access)) {
+                    if (isSrgName(newName)) { //Private with the same name are valid. but if we're in SRG names, we should make it unique to allow separate names to be crowdsourced.
+                        diagnostic("BadOverride").at(cls.name).member(mt.name, mt.desc).mapped(newName)
+                            .report("  BadOverride: %s/%s %s -> %s/%s %s -- %s", cls.name, mt.name, mt.desc, parent.name, unmapped, mt.desc, newName);
                         success = false;
                         continue;
                     }
+                } else if (!mt.name.equals(unmapped)) { //Obf name is different, so it's not a proper override, but SRG name matches, so bad shade.
+                    diagnostic("Shade").at(cls.name).member(mt.name, mt.desc).mapped(newName)
+                        .report("  Shade: %s/%s %s/%s %s %s", cls.name, mt.name, parent.name, unmapped, mt.desc, newName);
+                    success = false;
+                    continue;
                 }
             }
 
-            for (Method mt : cls.getMethods().values()) {
-                if (Modifier.isStatic(mt.access) || mt.name.startsWith("<"))
+            m = parent.getMethod(mt.name, mt.desc);
+            if (m != null && !Modifier.isPrivate(m.access)) { //Parent has same obfed name as child and parent isn't private, make sure they have the same mapped name to maintain the override.
+                String mapped = pinfo == null ? mt.name : pinfo.remapMethod(mt.name, mt.desc);
+                if (!newName.equals(mapped)) {
+                    diagnostic("Override").at(cls.name).member(mt.name, mt.desc).mapped(newName, mapped)
+                        .report("  Override: %s/%s %s -- %s -> %s", cls.name, mt.name, mt.desc, newName, mapped);
+                    success = false;
                     continue;
-
-                IClass clsI = map.getClass(cls.name);
-                String newName = clsI.remapMethod(mt.name, mt.desc);
-                String newSignature = map.remapDescriptor(mt.desc);
-
-                for (Class parent : cls.getStack()) {
-                    IClass pinfo = map.getClass(parent.name);
-                    IClass rinfo = pinfo == null ? null : reverse.getClass(pinfo.getMapped());
-                    String unmapped = rinfo == null ? newName : rinfo.remapMethod(newName, newSignature);
-                    Node m = parent.getMethod(unmapped, mt.desc);
-                    if (m != null) {//Parent has same mapped name
-                        if (Modifier.isPrivate(m.access)) {
-                            if (newName.startsWith("func_") || newName.startsWith("m_")) { //Private with the same name are valid. but if we're in SRG names, we should make it unique to allow separate names to be crowdsourced.
-                                error("  BadOverride: %s/%s %s -> %s/%s %s -- %s", cls.name, mt.name, mt.desc, parent.name, unmapped, mt.desc, newName);
-                                success = false;
-                                continue;
-                            }
-                        } else if (!mt.name.equals(unmapped)) { //Obf name is different, so it's not a proper override, but SRG name matches, so bad shade.
-                            error("  Shade: %s/%s %s/%s %s %s", cls.name, mt.name, parent.name, unmapped, mt.desc, newName);
-                            success = false;
-                            continue;
-                        }
-                    }
-
-                    m = parent.getMethod(mt.name, mt.desc);
-                    if (m != null && !Modifier.isPrivate(m.access)) { //Parent has same obfed name as child and parent isn't private, make sure they have the same mapped name to maintain the override.
-                        String mapped = pinfo == null ? mt.name : pinfo.remapMethod(mt.name, mt.desc);
-                        if (!newName.equals(mapped)) {
-                            error("  Override: %s/%s %s -- %s -> %s", cls.name, mt.name, mt.desc, newName, mapped);
-                            success = false;
-                            continue;
-                        }
-                    }
                 }
             }
         }
@@ -147,7 +232,12 @@ public class OverrideNames extends SimpleVerifier {
         }
 
         for (Entry<Class, Set<Class>> e : interfaces.entrySet()) {
+            if (verifier.isCancelled())
+                break;
+
             Class cls = e.getKey();
+            if (!verifier.isSelected(cls))
+                continue;
             Main.LOG.finest("  Processing Interface: " + mapClass(cls.name));
             Set<Class> stack = new TreeSet<>(e.getValue());
 
@@ -157,7 +247,7 @@ public class OverrideNames extends SimpleVerifier {
             }
 
             for (Method mt : cls.getMethods().values()) {
-                if (Modifier.isStatic(mt.access) || mt.name.startsWith("<"))
+                if (Modifier.isStatic(mt.access) || mt.name.startsWith("<") || !isRenamed(mt))
                     continue;
 
                 String newName = mapMethod(cls.name, mt.name, mt.desc);
@@ -167,7 +257,8 @@ public class OverrideNames extends SimpleVerifier {
                     if (m != null && !Modifier.isPrivate(m.access)) {
                         String mapped = mapMethod(parent.name, mt.name, mt.desc);
                         if (!newName.equals(mapped)) {
-                            error("  Override: %s/%s %s -- %s -> %s", parent.name, mt.name, mt.desc, mapped, newName);
+                            diagnostic("Override").at(parent.name).member(mt.name, mt.desc).mapped(mapped, newName)
+                                .report("  Override: %s/%s %s -- %s -> %s", parent.name, mt.name, mt.desc, mapped, newName);
                             success = false;
                             continue;
                         }
@@ -180,55 +271,52 @@ public class OverrideNames extends SimpleVerifier {
     }
 
     /**
-     * Resolves all overrides for each class, this works fine except it outputs the same errors multiple times.
+     * Resolves all overrides for the class, this works fine except it outputs the same errors multiple times.
      * Need to fix that later.
      */
-    private boolean checkPerLevel(InheratanceMap inh) {
-        boolean success = true;
-        Map<Class, LinkInfo> links = buildLinks();
-        Map<Class, ExposedMethods> cache = new HashMap<>();
-        Queue<Class> q = new UniqueDeque<>(inh.getOwned());
+    private boolean checkPerLevel(InheratanceMap inh, Class cls) {
+        LinkInfo info = links.get(cls);
+        if (info == null)
+            throw new IllegalStateException("Did not find link info for " + cls.name);
 
-        while(!q.isEmpty()) {
-            Class cls = q.poll();
-            LinkInfo info = links.get(cls);
-            if (info == null)
-                throw new IllegalStateException("Did not find link info for " + cls.name);
+        ExposedMethods self = resolveLevel(inh, links, cache, cls);
 
-            ExposedMethods self = resolveLevel(inh, links, cache, cls);
+        Set<String> bounced = new HashSet<>(self.bounces.keySet());
+        self.bounces.values().forEach(bounced::addAll);
 
-            // Get a copy so we don't modify the back end
-            Map<String, Set<Method>> methods = new HashMap<>();
-            for (Entry<String, Set<Method>> entry : self.methods.entrySet())
+        // Get a copy so we don't modify the back end
+        // Anything that isn't renamed and isn't merged with a bouncer all has the same name, so is fine.
+        Map<String, Set<Method>> methods = new HashMap<>();
+        for (Entry<String, Set<Method>> entry : self.methods.entrySet()) {
+            if (renamed.contains(entry.getKey()) || bounced.contains(entry.getKey()))
                 methods.put(entry.getKey(), new HashSet<>(entry.getValue()));
+        }
 
-            // Merge bounces together
-            for (Entry<String, Set<String>> entry : self.bounces.entrySet()) {
-                Set<Method> left = methods.get(entry.getKey());
-                for (String target : entry.getValue()) {
-                    Set<Method> right = methods.get(target);
-
-                    if (left == right) {
-                        // Already merged
-                    } else if (left == null || right == null) {
-                        Main.LOG.warning("Unable to merge bouncer: " + cls.getName() + ' ' + mapClass(cls.getName()));
-                        Main.LOG.warning("  " + entry.getKey() + ": " + left);
-                        Main.LOG.warning("  " + target + ": " + right);
-                    } else {
-                        left.addAll(right);
-                        methods.put(target, left);
-                    }
+        // Merge bounces together
+        for (Entry<String, Set<String>> entry : self.bounces.entrySet()) {
+            Set<Method> left = methods.get(entry.getKey());
+            for (String target : entry.getValue()) {
+                Set<Method> right = methods.get(target);
+
+                if (left == right) {
+                    // Already merged
+                } else if (left == null || right == null) {
+                    Main.LOG.warning("Unable to merge bouncer: " + cls.getName() + ' ' + mapClass(cls.getName()));
+                    Main.LOG.warning("  " + entry.getKey() + ": " + left);
+                    Main.LOG.warning("  " + target + ": " + right);
+                } else {
+                    left.addAll(right);
+                    methods.put(target, left);
                 }
             }
-
-            success &= verifyOverrides(methods.values());
         }
 
-        return success;
+        return verifyOverrides(methods.values());
     }
 
     /**
      * Resolves all the public methods for this class. This is a joined copy of the parents state, allowing us to modify it without modifying the parent.
+     * The cache may be shared between threads, which at worst resolve the same class twice, with the same result.
      */
     private static ExposedMethods resolveLevel(InheratanceMap inh, Map<Class, LinkInfo> links, Map<Class, ExposedMethods> cache, Class cls) {
         ExposedMethods ret = cache.get(cls);
@@ -270,7 +358,7 @@ public class OverrideNames extends SimpleVerifier {
                         // For some reason, if you implement a generic interface, your subclasses get a synthetic bouncer method as well as the class you implement it on.
                         // This should only ever be the case where the method is in the stack.. So we shouldn't need anything special.
                         // Lets throw a warning if it is this odd edge case.
-                        Class owner = inh.getClass(bounce.owner);
+                        Class owner = inh.findClass(bounce.owner);
                         LinkInfo link = links.get(owner);
                         if (link == null)
                             Main.LOG.warning("Could not find link info for: " + bounce.owner);
@@ -350,7 +438,7 @@ public class OverrideNames extends SimpleVerifier {
                             // For some reason, if you implement a generic interface, your subclasses get a synthetic bouncer method as well as the class you implement it on.
                             // This should only ever be the case where the method is in the stack.. So we shouldn't need anything special.
                             // Lets throw a warning if it is this odd edge case.
-                            Class owner = inh.getClass(bounce.owner);
+                            Class owner = inh.findClass(bounce.owner);
                             LinkInfo link = links.get(owner);
                             if (link == null)
                                 Main.LOG.warning("Could not find link info for: " + sibling.getName());
@@ -435,6 +523,9 @@ public class OverrideNames extends SimpleVerifier {
             if (!visited.add(linked))
                 continue;
 
+            if (linked.stream().noneMatch(this::isRenamed) && linked.stream().map(mtd -> mtd.name).distinct().count() <= 1)
+                continue;
+
             Map<String, Set<Method>> named = new HashMap<>();
             for (Method mtd : linked) {
                 String mapped = mapMethod(mtd.owner.name, mtd.name, mtd.desc);
@@ -442,14 +533,17 @@ public class OverrideNames extends SimpleVerifier {
             }
 
             if (named.size() != 1) {
-                error("Invalid Override: ");
+                Diagnostic.Builder diag = diagnostic("Invalid Override").mapped(new ArrayList<>(named.keySet()));
                 for (Entry<String, Set<Method>> e : named.entrySet()) {
-                    error("  " + e.getKey() + ": " + e.getValue().stream().map(Method::getKey).sorted().collect(Collectors.joining(", ")));
+                    diag.detail("  " + e.getKey() + ": " + e.getValue().stream().map(Method::getKey).sorted().collect(Collectors.joining(", ")));
                 }
+                diag.report("Invalid Override: ");
                 success = false;
             }
         }
 
+        if (verifier.getMetrics() != null)
+            verifier.getMetrics().count(Metrics.OVERRIDE_GROUPS, visited.size());
         return success;
     }
 
@@ -484,7 +578,8 @@ public class OverrideNames extends SimpleVerifier {
         ));
 
         // Get all classes linked to this class by direct inheritance only.
-        public Set<Class> getStack() {
+        // Synchronized as the links may be shared by verifiers running at the same time.
+        public synchronized Set<Class> getStack() {
             if (stack == null) {
                 Set<Class> ret = new LinkedHashSet<>();
 
@@ -517,7 +612,7 @@ public class OverrideNames extends SimpleVerifier {
         }
 
         // Gather every interface that is attached to this class by anything in its known stack
-        public Set<Class> getInterfaces() {
+        public synchronized Set<Class> getInterfaces() {
             if (this.interfaces == null) {
                 Set<Class> ret = new HashSet<>();
 
@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) Forge Development LLC
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+package net.minecraftforge.mappingverifier;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import net.minecraftforge.mappingverifier.InheratanceMap.Class;
+import net.minecraftforge.srgutils.IMappingFile;
+
+/**
+ * A tiered verification, trading coverage for speed so mapping editors get feedback in seconds. CI should still run the full one.
+ * <p>
+ * The first tier runs on every owned class, but only checks the mapping against the members of each class: duplicated IDs
+ * and overrides that are given different names. The second tier runs every other check, but only on a sample of the owned classes.
+ * <p>
+ * The sample is stratified, every hierarchy of owned classes is split by mapped package, and a share of each of those groups is
+ * picked, at least one. The classes are picked by a hash of their name, so the same ones are sampled every run.
+ * Or a filter picks the classes instead.
+ */
+public class QuickCheck {
+    public enum Tier {
+        /** The checks that only need the mapping and the members of each class, run on every owned class. */
+        MAPPING,
+        /** Every other check, run on the sampled classes. */
+        SAMPLED
+    }
+
+    private double rate = 0.05;
+    private long seed = 0;
+    private Pattern filter = null;
+
+    /**
+     * @param rate The share of every group of classes that is sampled, from 0 to 1. Defaults to 5%.
+     */
+    public QuickCheck setRate(double rate) {
+        if (rate <= 0 || rate > 1)
+            throw new IllegalArgumentException("Invalid sample rate: " + rate);
+        this.rate = rate;
+        return this;
+    }
+
+    /**
+     * Samples different classes, every seed gives a different sample.
+     */
+    public QuickCheck setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Only checks the owned classes whose obfuscated or mapped name contains a match of this in the second tier, instead of a sample.
+     */
+    public QuickCheck setFilter(Pattern filter) {
+        this.filter = filter;
+        return this;
+    }
+
+    /**
+     * Runs both tiers using the tasks, mapping and classes of the verifier, reporting to its sink.
+     * Tasks that aren't a {@link IClassVerifier} can't be limited to some classes, so aren't run.
+     */
+    public Coverage verify(MappingVerifier verifier) {
+        List<IClassVerifier> first = new ArrayList<>();
+        List<IClassVerifier> second = new ArrayList<>();
+        List<String> skipped = new ArrayList<>();
+        for (IVerifier task : verifier.getTasks()) {
+            if (!(task instanceof IClassVerifier)) {
+                skipped.add(task.getName());
+                continue;
+            }
+            if (task instanceof UniqueIDs || task instanceof OverrideNames)
+                first.add((IClassVerifier)task);
+            // Duplicated IDs are only about the mapping, so they are fully checked by the first tier.
+            if (!(task instanceof UniqueIDs))
+                second.add((IClassVerifier)task);
+        }
+
+        InheratanceMap inh = verifier.getInheratance();
+        IMappingFile map = verifier.getMappings();
+        inh.resolve();
+
+        Map<String, List<String>> hierarchies = hierarchies(inh.getOwned());
+        Map<String, List<String>> groups = new TreeMap<>();
+        Set<String> packages = new HashSet<>();
+        hierarchies.forEach((root, classes) -> {
+            for (String cls : classes) {
+                String mapped = map.remapClass(cls);
+                String pkg = mapped.lastIndexOf('/') == -1 ? "" : mapped.substring(0, mapped.lastIndexOf('/'));
+                packages.add(pkg);
+                groups.computeIfAbsent(root + ' ' + pkg, k -> new ArrayList<>()).add(cls);
+            }
+        });
+
+        Set<String> sample = filter == null ? sample(groups) : filter(inh.getOwned(), map);
+        Coverage ret = new Coverage(rate, seed, filter, inh.getOwned().size(), sample.size(), hierarchies.size(), packages.size(), groups.size());
+        ret.first = first.stream().map(IVerifier::getName).collect(Collectors.toList());
+        ret.second = second.stream().map(IVerifier::getName).collect(Collectors.toList());
+        ret.skipped = skipped;
+
+        boolean valid = true;
+        try {
+            verifier.setTier(Tier.MAPPING);
+            Counter counter = new Counter();
+            first.add(counter);
+            valid &= verifier.visit(first);
+            ret.firstVisited = counter.classes;
+
+            verifier.setTier(Tier.SAMPLED);
+            verifier.setClassFilter(cls -> sample.contains(cls.name));
+            counter = new Counter();
+            second.add(counter);
+            valid &= verifier.visit(second);
+            ret.secondVisited = counter.classes;
+        } finally {
+            verifier.setTier(null);
+            verifier.setClassFilter(null);
+        }
+
+        ret.valid = valid;
+        ret.cancelled = verifier.isCancelled();
+        ret.errors = verifier.getErrorCount();
+        return ret;
+    }
+
+    private static Map<String, List<String>> hierarchies(Collection<Class> owned) {
+        Map<String, List<String>> supers = new TreeMap<>();
+        for (Class cls : owned) {
+            List<String> list = new ArrayList<>();
+            if (cls.getParent() != null)
+                list.add(cls.getParent().name);
+            cls.getInterfaces().forEach(inf -> list.add(inf.name));
+            supers.put(cls.name, list);
+        }
+        return Shards.group(supers);
+    }
+
+    private Set<String> sample(Map<String, List<String>> groups) {
+        Set<String> ret = new HashSet<>();
+        for (List<String> group : groups.values()) {
+            List<String> sorted = new ArrayList<>(group);
+            sorted.sort((a, b) -> {
+                int cmp = Long.compare(hash(a), hash(b));
+                return cmp != 0 ? cmp : a.compareTo(b);
+            });
+            int count = Math.max(1, (int)Math.ceil(sorted.size() * rate));
+            ret.addAll(sorted.subList(0, Math.min(count, sorted.size())));
+        }
+        return ret;
+    }
+
+    private Set<String> filter(Collection<Class> owned, IMappingFile map) {
+        Set<String> ret = new HashSet<>();
+        for (Class cls : owned) {
+            if (filter.matcher(cls.name).find() || filter.matcher(map.remapClass(cls.name)).find())
+                ret.add(cls.name);
+        }
+        return ret;
+    }
+
+    // FNV-1a, so the sample doesn't change between Java versions like String.hashCode could.
+    private long hash(String name) {
+        long hash = 0xcbf29ce484222325L ^ seed;
+        for (int x = 0; x < name.length(); x++) {
+            hash ^= name.charAt(x);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /*
+     * Counts the classes each tier actually visited, which is less then planned if the run was cancelled.
+     */
+    private static class Counter implements IClassVerifier {
+        private int classes = 0;
+
+        @Override
+        public void visitClass(Class cls) {
+            classes++;
+        }
+
+        @Override
+        public List<String> getErrors() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean process() {
+            return true;
+        }
+
+        @Override
+        public boolean end() {
+            return true;
+        }
+    }
+
+    /**
+     * What a quick check covered, and whether it found any errors.
+     */
+    public static class Coverage {
+        private final double rate;
+        private final long seed;
+        private final Pattern filter;
+        private final int owned;
+        private final int sampled;
+        private final int hierarchies;
+        private final int packages;
+        private final int groups;
+        private List<String> first;
+        private List<String> second;
+        private List<String> skipped;
+        private int firstVisited;
+        private int secondVisited;
+        private boolean valid;
+        private boolean cancelled;
+        private int errors;
+
+        private Coverage(double rate, long seed, Pattern filter, int owned, int sampled, int hierarchies, int packages, int groups) {
+            this.rate = rate;
+            this.seed = seed;
+            this.filter = filter;
+            this.owned = owned;
+            this.sampled = sampled;
+            this.hierarchies = hierarchies;
+            this.packages = packages;
+            this.groups = groups;
+        }
+
+        public boolean isValid() {
+            return valid;
+        }
+
+        /**
+         * @return The number of owned classes the second tier checked.
+         */
+        public int getSampled() {
+            return secondVisited;
+        }
+
+        public int getOwned() {
+            return owned;
+        }
+
+        /**
+         * @return A description of exactly what was checked.
+         */
+        public List<String> getLines() {
+            List<String> ret = new ArrayList<>();
+            ret.add("Coverage:");
+            ret.add(String.format(Locale.ENGLISH, "  Tier 1: %d/%d classes, mapping only: %s", firstVisited, owned, String.join(", ", first)));
+            String how = filter == null
+                ? String.format(Locale.ENGLISH, "%s%% of each of %d groups, from %d hierarchies and %d packages, seed %d", percent(rate), groups, hierarchies, packages, seed)
+                : "matching " + filter.pattern();
+            ret.add(String.format(Locale.ENGLISH, "  Tier 2: %d/%d classes (%s%%), %s: %s", secondVisited, owned, percent(owned == 0 ? 0 : (double)secondVisited / owned), how, String.join(", ", second)));
+            if (!skipped.isEmpty())
+                ret.add("  Not run: " + String.join(", ", skipped));
+            if (cancelled)
+                ret.add("  Stopped after " + errors + " errors, " + (sampled - secondVisited) + " sampled classes were not checked");
+            return ret;
+        }
+
+        private String percent(double value) {
+            return String.format(Locale.ENGLISH, "%.1f", value * 100);
+        }
+    }
+}
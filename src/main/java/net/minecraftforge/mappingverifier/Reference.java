@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) Forge Development LLC
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+package net.minecraftforge.mappingverifier;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.InvokeDynamicInsnNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+
+/**
+ * A distinct symbolic reference made from the code of a class to a class, field or method.
+ */
+public class Reference {
+    public enum Kind { CLASS, FIELD, METHOD }
+
+    public final Kind kind;
+    public final String owner;
+    public final String name;
+    public final String desc;
+    private final int hash;
+
+    Reference(Kind kind, String owner, String name, String desc) {
+        this.kind = kind;
+        this.owner = owner;
+        this.name = name;
+        this.desc = desc;
+        this.hash = Objects.hash(kind, owner, name, desc);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this)
+            return true;
+        if (!(o instanceof Reference))
+            return false;
+        Reference r = (Reference)o;
+        return kind == r.kind && owner.equals(r.owner) && Objects.equals(name, r.name) && Objects.equals(desc, r.desc);
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+            case CLASS:  return owner;
+            case FIELD:  return owner + '/' + name;
+            default:     return owner + '/' + name + desc;
+        }
+    }
+
+    /**
+     * Gathers every distinct reference made by the methods of this class, in the order they are first used.
+     * Methods are walked sorted by name and descriptor so that the order is stable.
+     * References to the class itself are skipped, as we can access anything in ourself.
+     */
+    static Set<Reference> gather(ClassNode node) {
+        Set<Reference> refs = new LinkedHashSet<>();
+
+        List<MethodNode> methods = node.methods.stream().sequential()
+            .sorted((o1, o2) -> o1.name.equals(o2.name) ? o1.desc.compareTo(o2.desc) : o1.name.compareTo(o2.name))
+            .collect(Collectors.toList());
+
+        for (MethodNode mt : methods) {
+            for (AbstractInsnNode isn : (Iterable<AbstractInsnNode>)() -> mt.instructions.iterator()) {
+                if (isn instanceof FieldInsnNode) {
+                    FieldInsnNode field = (FieldInsnNode)isn;
+                    add(refs, node, new Reference(Kind.FIELD, field.owner, field.name, field.desc));
+                } else if (isn instanceof MethodInsnNode) {
+                    MethodInsnNode method = (MethodInsnNode)isn;
+                    add(refs, node, new Reference(Kind.METHOD, method.owner, method.name, method.desc));
+                } else if (isn instanceof TypeInsnNode) {
+                    add(refs, node, new Reference(Kind.CLASS, ((TypeInsnNode)isn).desc, null, null));
+                } else if (isn instanceof InvokeDynamicInsnNode) {
+                    InvokeDynamicInsnNode indy = (InvokeDynamicInsnNode)isn;
+                    constant(refs, node, indy.bsm);
+                    if (indy.bsmArgs != null) {
+                        for (Object arg : indy.bsmArgs)
+                            constant(refs, node, arg);
+                    }
+                } else if (isn instanceof LdcInsnNode) {
+                    constant(refs, node, ((LdcInsnNode)isn).cst);
+                }
+            }
+        }
+
+        return refs.isEmpty() ? Collections.emptySet() : refs;
+    }
+
+    private static void constant(Set<Reference> refs, ClassNode node, Object cst) {
+        if (cst instanceof Handle) {
+            Handle handle = (Handle)cst;
+            Kind kind = handle.getTag() <= Opcodes.H_PUTSTATIC ? Kind.FIELD : Kind.METHOD;
+            add(refs, node, new Reference(kind, handle.getOwner(), handle.getName(), handle.getDesc()));
+        } else if (cst instanceof Type) {
+            Type type = (Type)cst;
+            // Arrays are kept as their descriptor, same as a TypeInsnNode, method types have no owner to check.
+            if (type.getSort() == Type.OBJECT || type.getSort() == Type.ARRAY)
+                add(refs, node, new Reference(Kind.CLASS, type.getInternalName(), null, null));
+        }
+    }
+
+    private static void add(Set<Reference> refs, ClassNode node, Reference ref) {
+        if (!ref.owner.equals(node.name)) //We can access anything in ourself
+            refs.add(ref);
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) Forge Development LLC
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+package net.minecraftforge.mappingverifier;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A local, content addressed cache of whole verification runs. The key is a fingerprint of every input, the jar, mapping and
+ * libraries' contents, the settings that change which classes are read, the tasks and the version of this tool. So if the same combination is verified again, the stored
+ * report can be replayed without loading or verifying anything.
+ * <p>
+ * Entries are written to a temporary file and atomically moved into place, so multiple processes can share one directory.
+ */
+public class ResultCache {
+    private static final int FORMAT_VERSION = 2;
+
+    private final Path dir;
+
+    public ResultCache(File dir) {
+        this.dir = dir.toPath();
+    }
+
+    /**
+     * Builds a stable fingerprint of everything that can change the result of a run.
+     */
+    public static String fingerprint(File jar, File map, Collection<File> libs, String settings, Collection<String> tasks) throws IOException {
+        MessageDigest digest = sha256();
+        update(digest, Main.VERSION);
+        update(digest, settings);
+        for (String task : new TreeSet<>(tasks))
+            update(digest, "Task: " + task);
+        update(digest, "Jar: " + hash(jar));
+        update(digest, "Map: " + hash(map));
+        for (File lib : libs)
+            update(digest, "Lib: " + hash(lib));
+        return hex(digest.digest());
+    }
+
+    /**
+     * @return The stored result for this fingerprint, or null if it has not been cached.
+     */
+    public Result load(String key) throws IOException {
+        try (InputStream stream = Files.newInputStream(dir.resolve(key))) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+            if (in.readInt() != FORMAT_VERSION)
+                return null;
+
+            boolean valid = in.readBoolean();
+            Map<String, List<Diagnostic>> diagnostics = new LinkedHashMap<>();
+            for (int x = in.readInt(); x > 0; x--) {
+                String task = in.readUTF();
+                diagnostics.put(task, BinaryIO.readDiagnostics(in, task));
+            }
+            return new Result(valid, diagnostics);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    public void store(String key, boolean valid, Collection<IVerifier> tasks) throws IOException {
+        Map<String, List<Diagnostic>> diagnostics = new LinkedHashMap<>();
+        for (IVerifier task : tasks)
+            diagnostics.put(task.getName(), task.getDiagnostics());
+        store(key, new Result(valid, diagnostics));
+    }
+
+    public void store(String key, Result result) throws IOException {
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, key, ".tmp");
+        try {
+            try (OutputStream stream = Files.newOutputStream(tmp)) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+                out.writeInt(FORMAT_VERSION);
+                out.writeBoolean(result.isValid());
+                out.writeInt(result.getDiagnostics().size());
+                for (Entry<String, List<Diagnostic>> task : result.getDiagnostics().entrySet()) {
+                    out.writeUTF(task.getKey());
+                    BinaryIO.writeDiagnostics(out, task.getValue());
+                }
+                out.flush();
+            }
+
+            try {
+                Files.move(tmp, dir.resolve(key), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, dir.resolve(key), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    public static class Result {
+        private final boolean valid;
+        private final Map<String, List<Diagnostic>> diagnostics;
+
+        Result(boolean valid, Map<String, List<Diagnostic>> diagnostics) {
+            this.valid = valid;
+            this.diagnostics = Collections.unmodifiableMap(diagnostics);
+        }
+
+        public boolean isValid() {
+            return valid;
+        }
+
+        /**
+         * @return The diagnostics of every task, in the order the tasks were run.
+         */
+        public Map<String, List<Diagnostic>> getDiagnostics() {
+            return diagnostics;
+        }
+
+        /**
+         * @return The error lines of every task, the same as their {@link IVerifier#getErrors()}.
+         */
+        public Map<String, List<String>> getErrors() {
+            Map<String, List<String>> ret = new LinkedHashMap<>();
+            diagnostics.forEach((task, diags) -> {
+                List<String> lines = new ArrayList<>();
+                diags.forEach(diagnostic -> lines.addAll(diagnostic.getLines()));
+                ret.put(task, lines);
+            });
+            return ret;
+        }
+    }
+
+    private static String hash(File file) throws IOException {
+        MessageDigest digest = sha256();
+        if (!file.isDirectory()) {
+            update(digest, file.toPath());
+        } else {
+            // Directories of classes are hashed by the relative path and contents of every file, in a stable order.
+            Path root = file.toPath();
+            List<Path> files;
+            try (Stream<Path> stream = Files.walk(root)) {
+                files = stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+            }
+            for (Path path : files) {
+                update(digest, root.relativize(path).toString().replace('\\', '/'));
+                update(digest, path);
+            }
+        }
+        return hex(digest.digest());
+    }
+
+    private static void update(MessageDigest digest, Path file) throws IOException {
+        byte[] buf = new byte[65536];
+        try (InputStream in = Files.newInputStream(file)) {
+            int len;
+            while ((len = in.read(buf)) != -1)
+                digest.update(buf, 0, len);
+        }
+    }
+
+    private static void update(MessageDigest digest, String line) {
+        digest.update((line + '\n').getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Every JVM is required to support SHA-256", e);
+        }
+    }
+
+    private static String hex(byte[] data) {
+        StringBuilder buf = new StringBuilder(data.length * 2);
+        for (byte b : data)
+            buf.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        return buf.toString();
+    }
+}
@@ -0,0 +1,526 @@
+/*
+ * Copyright (c) Forge Development LLC
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+package net.minecraftforge.mappingverifier;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import org.objectweb.asm.ClassReader;
+
+import net.minecraftforge.mappingverifier.InheratanceMap.Class;
+import net.minecraftforge.mappingverifier.InheratanceMap.Field;
+import net.minecraftforge.mappingverifier.InheratanceMap.Method;
+
+/**
+ * Splits a verification between multiple local worker processes. The owned classes are partitioned by hierarchy, so classes that
+ * extend or implement each other end up in the same shard, and each worker only visits its own shard's classes.
+ * <p>
+ * This relies on {@link IClassVerifier#isIncremental()}, the errors of an incremental verifier's class only depend on that class,
+ * so they can be found by any worker and merged back in order. Everything else, non-incremental verifiers and
+ * {@link IClassVerifier#end()}, is run by the first worker only. The merged report is the same as a single process run.
+ * <p>
+ * So only the first worker loads everything, the others only load the classes their shard's classes extend or reference.
+ */
+public class Shards {
+    private static final int FORMAT_VERSION = 2;
+    private static final int MAX_ATTEMPTS = 3;
+
+    /**
+     * Verifies using the given number of worker processes, running each failed shard again up to a few times.
+     * @param release The Java release to read the JDK classes of, or null for the running JDK.
+     */
+    public static ResultCache.Result run(File jar, File map, List<File> libs, Integer release, int count) throws IOException {
+        List<List<String>> shards = partition(jar, count);
+        Path dir = Files.createTempDirectory("mappingverifier-shards");
+        Main.LOG.info("Shards: " + shards.stream().map(s -> Integer.toString(s.size())).collect(Collectors.joining(", ")) + " in " + dir);
+
+        List<Integer> pending = new ArrayList<>();
+        for (int x = 0; x < shards.size(); x++) {
+            Files.write(dir.resolve("shard-" + x + ".txt"), shards.get(x), StandardCharsets.UTF_8);
+            pending.add(x);
+        }
+
+        for (int attempt = 1; !pending.isEmpty(); attempt++) {
+            if (attempt > MAX_ATTEMPTS)
+                throw new IOException("Shards " + pending + " failed " + MAX_ATTEMPTS + " times, see the logs in " + dir);
+
+            Map<Integer, Process> running = new LinkedHashMap<>();
+            for (int shard : pending)
+                running.put(shard, start(dir, shard, jar, map, libs, release));
+
+            pending.clear();
+            for (Map.Entry<Integer, Process> e : running.entrySet()) {
+                int exit;
+                try {
+                    exit = e.getValue().waitFor();
+                } catch (InterruptedException ex) {
+                    running.values().forEach(Process::destroy);
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for shards", ex);
+                }
+
+                if (exit != 0 || !Files.exists(dir.resolve("shard-" + e.getKey() + ".bin"))) {
+                    Main.LOG.warning("Shard " + e.getKey() + " failed with exit code " + exit + ", attempt " + attempt);
+                    pending.add(e.getKey());
+                }
+            }
+        }
+
+        List<ShardResult> results = new ArrayList<>();
+        for (int x = 0; x < shards.size(); x++) {
+            try (InputStream in = Files.newInputStream(dir.resolve("shard-" + x + ".bin"))) {
+                results.add(ShardResult.read(in));
+            }
+        }
+        ResultCache.Result ret = merge(results);
+
+        for (File file : dir.toFile().listFiles())
+            Files.delete(file.toPath());
+        Files.delete(dir);
+
+        return ret;
+    }
+
+    private static Process start(Path dir, int shard, File jar, File map, List<File> libs, Integer release) throws IOException {
+        List<String> cmd = new ArrayList<>();
+        cmd.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getAbsolutePath());
+        // The workers get the same heap and JVM flags as this process, but not its debugger, agents or recordings.
+        for (String arg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (arg.startsWith("-Xmx") || arg.startsWith("-Xms") || arg.startsWith("-Xss") || (arg.startsWith("-XX:") && !arg.startsWith("-XX:StartFlightRecording")))
+                cmd.add(arg);
+        }
+        cmd.add("-cp");
+        cmd.add(System.getProperty("java.class.path"));
+        cmd.add(Main.class.getName());
+        cmd.add("--jar");
+        cmd.add(jar.getAbsolutePath());
+        cmd.add("--map");
+        cmd.add(map.getAbsolutePath());
+        for (File lib : libs) {
+            cmd.add("--lib");
+            cmd.add(lib.getAbsolutePath());
+        }
+        if (release != null) {
+            cmd.add("--release");
+            cmd.add(release.toString());
+        }
+        cmd.add("--shard-classes");
+        cmd.add(dir.resolve("shard-" + shard + ".txt").toString());
+        cmd.add("--shard-result");
+        cmd.add(dir.resolve("shard-" + shard + ".bin").toString());
+        if (shard == 0)
+            cmd.add("--shard-primary");
+
+        File log = dir.resolve("shard-" + shard + ".log").toFile();
+        return new ProcessBuilder(cmd).redirectErrorStream(true).redirectOutput(log).start();
+    }
+
+    /*
+     * Groups the owned classes that extend or implement each other, reading only the class headers, and spreads the groups
+     * between the shards largest first. Library classes don't link groups, else everything would be linked through java/lang/Object.
+     */
+    static List<List<String>> partition(File jar, int count) throws IOException {
+        Map<String, List<String>> supers = new TreeMap<>();
+        try (ClassProvider provider = ClassProvider.of(jar)) {
+            for (String name : provider.getClassNames()) {
+                ClassReader reader = new ClassReader(provider.getClassBytes(name));
+                List<String> list = new ArrayList<>();
+                if (reader.getSuperName() != null)
+                    list.add(reader.getSuperName());
+                Collections.addAll(list, reader.getInterfaces());
+                supers.put(reader.getClassName(), list);
+            }
+        }
+
+        List<List<String>> sorted = new ArrayList<>(group(supers).values());
+        sorted.sort(Comparator.comparingInt((List<String> l) -> -l.size()));
+
+        List<List<String>> ret = new ArrayList<>();
+        for (int x = 0; x < Math.max(1, count); x++)
+            ret.add(new ArrayList<>());
+        for (List<String> group : sorted)
+            Collections.min(ret, Comparator.comparingInt(List::size)).addAll(group);
+        return ret;
+    }
+
+    /**
+     * Groups the classes that extend or implement each other, only linking them through classes that are keys of the map.
+     * @param supers The parent and interfaces of every class, sorted by class name.
+     * @return Every group, in order, keyed by one of its classes.
+     */
+    static Map<String, List<String>> group(Map<String, List<String>> supers) {
+        Map<String, String> parents = new HashMap<>();
+        for (String cls : supers.keySet())
+            parents.put(cls, cls);
+
+        for (Map.Entry<String, List<String>> e : supers.entrySet()) {
+            for (String parent : e.getValue()) {
+                if (parents.containsKey(parent))
+                    parents.put(find(parents, e.getKey()), find(parents, parent));
+            }
+        }
+
+        Map<String, List<String>> groups = new TreeMap<>();
+        for (String cls : supers.keySet())
+            groups.computeIfAbsent(find(parents, cls), k -> new ArrayList<>()).add(cls);
+        return groups;
+    }
+
+    private static String find(Map<String, String> parents, String name) {
+        String root = name;
+        while (!root.equals(parents.get(root)))
+            root = parents.get(root);
+        while (!name.equals(root)) {
+            String next = parents.get(name);
+            parents.put(name, root);
+            name = next;
+        }
+        return root;
+    }
+
+    /*
+     * Puts every shard's errors back in the order a single process would have found them in.
+     * Which is by task, then by owned class name, followed by what the task reported once every class was visited.
+     * Each shard only left out what it reported itself already, so the ones another shard reported first are left out here.
+     */
+    static ResultCache.Result merge(List<ShardResult> results) {
+        ShardResult primary = results.get(0);
+        Map<String, List<Diagnostic>> diagnostics = new LinkedHashMap<>();
+        boolean valid = true;
+        for (String task : primary.tasks) {
+            List<Diagnostic> diags = primary.whole.get(task);
+            if (diags == null) {
+                Map<String, List<Diagnostic>> classes = new TreeMap<>();
+                for (ShardResult result : results)
+                    classes.putAll(result.classes.getOrDefault(task, Collections.emptyMap()));
+
+                Set<Long> seen = new HashSet<>();
+                diags = new ArrayList<>();
+                for (List<Diagnostic> cls : classes.values())
+                    addNew(diags, cls, seen);
+                addNew(diags, primary.end.getOrDefault(task, Collections.emptyList()), seen);
+            }
+            diagnostics.put(task, diags);
+            valid &= diags.isEmpty();
+        }
+        return new ResultCache.Result(valid, diagnostics);
+    }
+
+    private static void addNew(List<Diagnostic> target, List<Diagnostic> diagnostics, Set<Long> seen) {
+        for (Diagnostic diagnostic : diagnostics) {
+            if (seen.add(diagnostic.fingerprint()))
+                target.add(diagnostic);
+        }
+    }
+
+    /**
+     * Loads the jar and libraries, runs a worker's share of the verification, and writes what it found to the result file.
+     * @param primary If this worker should also run everything that is not split by class.
+     */
+    public static void work(MappingVerifier verifier, File jar, List<File> libs, File classes, File result, boolean primary) throws IOException {
+        Set<String> shard = new HashSet<>(Files.readAllLines(classes.toPath(), StandardCharsets.UTF_8));
+        if (primary) {
+            for (File lib : libs)
+                verifier.loadLibrary(lib);
+            verifier.loadJar(jar);
+        } else {
+            load(verifier.getInheratance(), jar, libs, shard);
+        }
+        verifier.getInheratance().resolve();
+
+        ShardResult ret = new ShardResult();
+        List<IClassVerifier> visitors = new ArrayList<>();
+        List<IVerifier> others = new ArrayList<>();
+        for (IVerifier task : verifier.getTasks()) {
+            ret.tasks.add(task.getName());
+            if (task instanceof IClassVerifier && ((IClassVerifier)task).isIncremental())
+                visitors.add(new ShardVisitor(verifier, (IClassVerifier)task, shard, primary, ret));
+            else if (primary && task instanceof IClassVerifier)
+                visitors.add((IClassVerifier)task);
+            else if (primary)
+                others.add(task);
+        }
+
+        verifier.visit(visitors);
+        others.forEach(IVerifier::process);
+
+        if (primary) {
+            for (IVerifier task : verifier.getTasks()) {
+                if (!(task instanceof IClassVerifier && ((IClassVerifier)task).isIncremental()))
+                    ret.whole.put(task.getName(), task.getDiagnostics());
+            }
+        }
+
+        Path tmp = Files.createTempFile(result.getAbsoluteFile().getParentFile().toPath(), result.getName(), ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            ret.write(out);
+        }
+        Files.move(tmp, result.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /*
+     * An incremental verifier only looks at the class it visits, the classes that one extends, and the classes it references along
+     * with what they extend. So that is all that is loaded, in the same order as loading the libraries and then the jar would.
+     * Found by reading the class headers, then again for the references of the shard's classes once they are in the map.
+     */
+    private static void load(InheratanceMap inh, File jar, List<File> libs, Set<String> shard) throws IOException {
+        List<Source> sources = new ArrayList<>();
+        try {
+            for (File lib : libs)
+                Source.open(ClassProvider.of(lib), false, sources);
+            Source.open(ClassProvider.of(jar), true, sources);
+
+            Set<String> seen = new HashSet<>();
+            load(inh, sources, shard, seen);
+
+            Set<String> referenced = new HashSet<>();
+            for (String name : shard) {
+                Class cls = inh.findClass(name);
+                if (cls != null && cls.isOwned())
+                    cls.getReferences().forEach(ref -> referenced.add(ref.owner));
+            }
+            load(inh, sources, referenced, seen);
+        } finally {
+            for (Source source : sources)
+                source.provider.close();
+        }
+    }
+
+    private static void load(InheratanceMap inh, List<Source> sources, Collection<String> names, Set<String> seen) throws IOException {
+        Deque<String> queue = new ArrayDeque<>(names);
+        while (!queue.isEmpty()) {
+            String name = queue.pop();
+            if (!seen.add(name))
+                continue;
+
+            for (Source source : sources) {
+                if (!source.names.contains(name))
+                    continue;
+                byte[] data = source.provider.getClassBytes(name);
+                if (data == null)
+                    continue;
+                source.pending.put(name, data);
+
+                ClassReader reader = new ClassReader(data);
+                if (reader.getSuperName() != null)
+                    queue.add(reader.getSuperName());
+                Collections.addAll(queue, reader.getInterfaces());
+            }
+        }
+
+        for (Source source : sources) {
+            for (String name : source.order) {
+                byte[] data = source.pending.remove(name);
+                if (data != null)
+                    inh.processClass(data, source.owned);
+            }
+        }
+    }
+
+    /*
+     * A jar or library to load from, the jars nested in it are sources of their own, loaded as libraries.
+     */
+    private static class Source {
+        private final ClassProvider provider;
+        private final boolean owned;
+        private final List<String> order;
+        private final Set<String> names;
+        private final Map<String, byte[]> pending = new HashMap<>();
+
+        private Source(ClassProvider provider, boolean owned) throws IOException {
+            this.provider = provider;
+            this.owned = owned;
+            this.order = provider.getClassNames();
+            this.names = new HashSet<>(order);
+        }
+
+        private static void open(ClassProvider provider, boolean owned, List<Source> sources) throws IOException {
+            sources.add(new Source(provider, owned));
+            for (String path : provider.getNestedJars())
+                open(provider.openNested(path), false, sources);
+        }
+    }
+
+    /*
+     * Only passes the classes in this shard to the verifier, and splits the errors by the class that reported them.
+     */
+    private static class ShardVisitor implements IClassVerifier {
+        private final MappingVerifier verifier;
+        private final IClassVerifier wrapped;
+        private final Set<String> shard;
+        private final boolean primary;
+        private final ShardResult result;
+        private final Map<String, List<Diagnostic>> classes = new HashMap<>();
+        private boolean active;
+        private int start;
+
+        private ShardVisitor(MappingVerifier verifier, IClassVerifier wrapped, Set<String> shard, boolean primary, ShardResult result) {
+            this.verifier = verifier;
+            this.wrapped = wrapped;
+            this.shard = shard;
+            this.primary = primary;
+            this.result = result;
+            result.classes.put(wrapped.getName(), classes);
+        }
+
+        @Override
+        public String getName() {
+            return wrapped.getName();
+        }
+
+        @Override
+        public List<String> getErrors() {
+            return wrapped.getErrors();
+        }
+
+        @Override
+        public List<Diagnostic> getDiagnostics() {
+            return wrapped.getDiagnostics();
+        }
+
+        @Override
+        public boolean process() {
+            return verifier.visit(Collections.singletonList(this));
+        }
+
+        @Override
+        public void begin() {
+            wrapped.begin();
+        }
+
+        @Override
+        public void visitClass(Class cls) {
+            this.active = shard.contains(cls.name);
+            this.start = getDiagnostics().size();
+            if (active)
+                wrapped.visitClass(cls);
+        }
+
+        @Override
+        public void visitField(Class cls, Field field) {
+            if (active)
+                wrapped.visitField(cls, field);
+        }
+
+        @Override
+        public void visitMethod(Class cls, Method method) {
+            if (active)
+                wrapped.visitMethod(cls, method);
+        }
+
+        @Override
+        public void visitReference(Class cls, Reference ref) {
+            if (active)
+                wrapped.visitReference(cls, ref);
+        }
+
+        @Override
+        public void visitEnd(Class cls) {
+            if (!active)
+                return;
+            wrapped.visitEnd(cls);
+            if (getDiagnostics().size() != start)
+                classes.put(cls.name, new ArrayList<>(getDiagnostics().subList(start, getDiagnostics().size())));
+        }
+
+        @Override
+        public boolean end() {
+            if (!primary)
+                return true;
+            int start = getDiagnostics().size();
+            boolean ret = wrapped.end();
+            result.end.put(getName(), new ArrayList<>(getDiagnostics().subList(start, getDiagnostics().size())));
+            return ret;
+        }
+    }
+
+    static class ShardResult {
+        private final List<String> tasks = new ArrayList<>();
+        /** Errors of the tasks that are not split by class, only run by the primary shard. */
+        private final Map<String, List<Diagnostic>> whole = new HashMap<>();
+        private final Map<String, Map<String, List<Diagnostic>>> classes = new HashMap<>();
+        private final Map<String, List<Diagnostic>> end = new HashMap<>();
+
+        private void write(OutputStream stream) throws IOException {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(tasks.size());
+            for (String task : tasks) {
+                out.writeUTF(task);
+                writeList(out, whole.get(task));
+                writeList(out, end.get(task));
+
+                Map<String, List<Diagnostic>> cls = classes.getOrDefault(task, Collections.emptyMap());
+                out.writeInt(cls.size());
+                for (String name : new TreeSet<>(cls.keySet())) {
+                    out.writeUTF(name);
+                    writeList(out, cls.get(name));
+                }
+            }
+            out.flush();
+        }
+
+        private static ShardResult read(InputStream stream) throws IOException {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+            int version = in.readInt();
+            if (version != FORMAT_VERSION)
+                throw new IOException("Unsupported shard result version: " + version);
+
+            ShardResult ret = new ShardResult();
+            for (int x = in.readInt(); x > 0; x--) {
+                String task = in.readUTF();
+                ret.tasks.add(task);
+                List<Diagnostic> whole = readList(in, task);
+                if (whole != null)
+                    ret.whole.put(task, whole);
+                List<Diagnostic> end = readList(in, task);
+                if (end != null)
+                    ret.end.put(task, end);
+
+                Map<String, List<Diagnostic>> cls = new HashMap<>();
+                for (int y = in.readInt(); y > 0; y--)
+                    cls.put(in.readUTF(), readList(in, task));
+                ret.classes.put(task, cls);
+            }
+            return ret;
+        }
+
+        private static void writeList(DataOutputStream out, List<Diagnostic> diagnostics) throws IOException {
+            out.writeBoolean(diagnostics != null);
+            if (diagnostics != null)
+                BinaryIO.writeDiagnostics(out, diagnostics);
+        }
+
+        private static List<Diagnostic> readList(DataInputStream in, String task) throws IOException {
+            return in.readBoolean() ? BinaryIO.readDiagnostics(in, task) : null;
+        }
+    }
+}
@@ -7,11 +7,13 @@ package net.minecraftforge.mappingverifier;
 import java.util.ArrayList;
 import java.util.List;
 
+import net.minecraftforge.mappingverifier.InheratanceMap.Class;
 import net.minecraftforge.srgutils.IMappingFile.IClass;
 
 public abstract class SimpleVerifier implements IVerifier {
     protected final MappingVerifier verifier;
     private List<String> errors = new ArrayList<>();
+    private List<Diagnostic> diagnostics = new ArrayList<>();
 
     protected SimpleVerifier(MappingVerifier verifier) {
         this.verifier = verifier;
@@ -22,10 +24,45 @@ public abstract class SimpleVerifier implements IVerifier {
         return errors;
     }
 
+    @Override
+    public List<Diagnostic> getDiagnostics() {
+        return diagnostics;
+    }
+
+    /**
+     * Keeps the errors of a class that was not visited again, see {@link IClassVerifier#restore(Class, List)}.
+     */
+    public void restore(Class cls, List<Diagnostic> diagnostics) {
+        if (!verifier.isRetainingErrors())
+            return;
+        for (Diagnostic diagnostic : diagnostics) {
+            errors.addAll(diagnostic.getLines());
+            this.diagnostics.add(diagnostic);
+        }
+    }
+
     protected void error(String format, String... args) {
-        String line = String.format(format, (Object[])args);
-        Main.LOG.fine(line);
-        errors.add(line);
+        diagnostic(null).report(format, args);
+    }
+
+    /**
+     * Starts building a structured error, which is reported once its message is set.
+     * @param kind The kind of problem, such as {@code Override}.
+     */
+    protected Diagnostic.Builder diagnostic(String kind) {
+        return new Diagnostic.Builder(this::report, getName(), kind);
+    }
+
+    private void report(Diagnostic diagnostic) {
+        if (verifier.report(diagnostic) != MappingVerifier.Reported.NEW)
+            return;
+        if (verifier.isRetainingErrors()) {
+            List<String> lines = diagnostic.getLines();
+            if (!verifier.hasSink())
+                lines.forEach(Main.LOG::fine);
+            errors.addAll(lines);
+            diagnostics.add(diagnostic);
+        }
     }
 
     protected String mapClass(String cls) {
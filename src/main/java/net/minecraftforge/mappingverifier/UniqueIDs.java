@@ -6,6 +6,7 @@ package net.minecraftforge.mappingverifier;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -14,7 +15,6 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
-import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -22,54 +22,70 @@ import net.minecraftforge.mappingverifier.InheratanceMap.Class;
 import net.minecraftforge.mappingverifier.InheratanceMap.Field;
 import net.minecraftforge.mappingverifier.InheratanceMap.Method;
 import net.minecraftforge.mappingverifier.InheratanceMap.Node;
-import net.minecraftforge.srgutils.IMappingFile;
 import net.minecraftforge.srgutils.IMappingFile.IClass;
 
-public class UniqueIDs extends SimpleVerifier {
+public class UniqueIDs extends SimpleVerifier implements IClassVerifier {
+    private Map<Integer, Set<String>> claimed;
+    private Map<String, Set<List<String>>> signatures;
+    private IClass info;
+
     protected UniqueIDs(MappingVerifier verifier) {
         super(verifier);
     }
 
     @Override
     public boolean process() {
+        return verifier.visit(Collections.singletonList(this));
+    }
+
+    @Override
+    public void begin() {
         Main.LOG.info("UniqueIDs:");
-        InheratanceMap inh = verifier.getInheratance();
-        IMappingFile map = verifier.getMappings();
-        Map<Integer, Set<String>> claimed = new TreeMap<>();
-        Map<String, Set<List<String>>> signatures = new HashMap<>();
-
-        Consumer<String[]> gather = entry -> {
-            String idstr = entry[0].split("_")[1];
-            if (idstr.matches("\\d+")) {
-                claimed.computeIfAbsent(Integer.parseInt(idstr), k -> new TreeSet<>()).add(entry[0]);
-                signatures.computeIfAbsent(entry[0], k -> new HashSet<>()).add(Arrays.asList(Arrays.copyOfRange(entry, 1, entry.length)));
-            }
-        };
+        this.claimed = new TreeMap<>();
+        this.signatures = new HashMap<>();
+    }
 
-        for (Class cls : inh.getOwned()) {
-            IClass info = map.getClass(cls.name);
+    private void gather(String... entry) {
+        String idstr = entry[0].split("_")[1];
+        if (idstr.matches("\\d+")) {
+            claimed.computeIfAbsent(Integer.parseInt(idstr), k -> new TreeSet<>()).add(entry[0]);
+            signatures.computeIfAbsent(entry[0], k -> new HashSet<>()).add(Arrays.asList(Arrays.copyOfRange(entry, 1, entry.length)));
+        }
+    }
 
-            for (Field field : cls.getFields().values()) {
-                String mapped = mapField(info, field.name);
-                if (mapped.startsWith("field_") || mapped.startsWith("f_"))
-                    gather.accept(new String[] { mapped, cls.name, field.name });
-            }
+    @Override
+    public void visitClass(Class cls) {
+        this.info = verifier.getMappings().getClass(cls.name);
+    }
 
-            for (Method method : cls.getMethods().values()) {
-                String mapped = mapMethod(info, method.name, method.desc);
-                if (mapped.startsWith("func_") || mapped.startsWith("m_"))
-                    gather.accept(new String[] { mapped, cls.name, method.name, method.desc });
-            }
-        }
+    @Override
+    public void visitField(Class cls, Field field) {
+        String mapped = mapField(info, field.name);
+        if (mapped.startsWith("field_") || mapped.startsWith("f_"))
+            gather(mapped, cls.name, field.name);
+    }
 
+    @Override
+    public void visitMethod(Class cls, Method method) {
+        String mapped = mapMethod(info, method.name, method.desc);
+        if (mapped.startsWith("func_") || mapped.startsWith("m_"))
+            gather(mapped, cls.name, method.name, method.desc);
+    }
 
+    @Override
+    public boolean end() {
+        InheratanceMap inh = verifier.getInheratance();
         boolean success = true;
         for (Entry<Integer, Set<String>> entry : claimed.entrySet()) {
+            if (verifier.isCancelled())
+                break;
+
             String name1 = entry.getValue().iterator().next();
             if (entry.getValue().size() == 1 && !different(name1, signatures.get(name1), inh))
                 continue;
 
-            error("Duplicate ID: %s (%s)", entry.getKey().toString(), entry.getValue().stream().sorted().collect(Collectors.joining(", ")));
+            List<String> names = entry.getValue().stream().sorted().collect(Collectors.toList());
+            Diagnostic.Builder diag = diagnostic("Duplicate ID").mapped(names);
 
             for (String name : entry.getValue()) {
                 Set<List<String>> sigs = signatures.get(name);
@@ -86,14 +102,15 @@ public class UniqueIDs extends SimpleVerifier {
                             String key = cls + "/<init>" + desc;
                             methods.put(key, methods.computeIfAbsent(key, k -> 0) + 1);
                         } else {
-                            InheratanceMap.Class cls = inh.getClass(pts.get(0));
+                            InheratanceMap.Class cls = inh.findClass(pts.get(0));
                             InheratanceMap.Method mtd = cls.getMethod(pts.get(1), pts.get(2));
-                            mtd.getRoots().forEach(root -> methods.put(root.getKey(), methods.computeIfAbsent(root.getKey(), k -> 0) + 1));
+                            inh.getRoots(mtd).forEach(root -> methods.put(root.getKey(), methods.computeIfAbsent(root.getKey(), k -> 0) + 1));
                         }
                     });
                 }
-                error("    %s (%s)", name, Stream.concat(fields.stream(), methods.entrySet().stream().map(e -> e.getKey() + '[' + e.getValue() + ']')).sorted().collect(Collectors.joining(", ")));
+                diag.detail(String.format("    %s (%s)", name, Stream.concat(fields.stream(), methods.entrySet().stream().map(e -> e.getKey() + '[' + e.getValue() + ']')).sorted().collect(Collectors.joining(", "))));
             }
+            diag.report("Duplicate ID: %s (%s)", entry.getKey().toString(), String.join(", ", names));
             success = false;
         }
         return success;
@@ -104,10 +121,10 @@ public class UniqueIDs extends SimpleVerifier {
         Set<String> roots = new HashSet<>();
         for (Class cls : inh.getOwned()) {
             for (Method mtd : cls.getMethods().values()) {
-                if (mtd.getRoots().size() == 1)
+                if (inh.getRoots(mtd).size() == 1)
                     continue;
 
-                List<String> overrides = mtd.getRoots().stream().map(Node::getKey).distinct().collect(Collectors.toList());
+                List<String> overrides = inh.getRoots(mtd).stream().map(Node::getKey).distinct().collect(Collectors.toList());
                 String root = null;
                 for (String o : overrides) {
                     if (roots.contains(o)) {
@@ -146,9 +163,9 @@ public class UniqueIDs extends SimpleVerifier {
         Set<String> roots = new HashSet<>();
         // Only Methods
         for (List<String> pts : entries) {
-            InheratanceMap.Class cls = inh.getClass(pts.get(0));
+            InheratanceMap.Class cls = inh.findClass(pts.get(0));
             InheratanceMap.Method mtd = cls.getMethod(pts.get(1), pts.get(2));
-            mtd.getRoots().forEach(root -> roots.add(root.getKey()));
+            inh.getRoots(mtd).forEach(root -> roots.add(root.getKey()));
         }
 
         if (roots.size() > 1)
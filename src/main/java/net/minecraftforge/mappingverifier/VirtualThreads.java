@@ -0,0 +1,17 @@
+/*
+ * Copyright (c) Forge Development LLC
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+package net.minecraftforge.mappingverifier;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Virtual threads are not available on this version of Java.
+ * This class is replaced in the Java 21 section of the multi-release jar.
+ */
+final class VirtualThreads {
+    static final ExecutorService EXECUTOR = null;
+
+    private VirtualThreads() {}
+}
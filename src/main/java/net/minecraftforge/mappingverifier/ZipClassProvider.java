@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) Forge Development LLC
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+package net.minecraftforge.mappingverifier;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Classes in a jar or jmod, listed in the order of the zip's entries.
+ * <p>
+ * Nested jars are streamed straight from their entry. Jar in jar tools usually store them without compression,
+ * in which case the entry's bytes are read in place and only the nested jar's own entries are inflated.
+ */
+class ZipClassProvider implements ClassProvider {
+    private final ZipFile zip;
+    private final Map<String, ZipEntry> entries = new LinkedHashMap<>();
+    private final Map<String, ZipEntry> nested = new LinkedHashMap<>();
+
+    ZipClassProvider(File file, String prefix) throws IOException {
+        this.zip = new ZipFile(file);
+        Enumeration<? extends ZipEntry> itr = zip.entries();
+        while (itr.hasMoreElements()) {
+            ZipEntry e = itr.nextElement();
+            if (e.isDirectory() || !e.getName().startsWith(prefix))
+                continue;
+
+            String path = e.getName().substring(prefix.length());
+            if (ClassProvider.isClass(path))
+                entries.put(path.substring(0, path.length() - 6), e);
+            else if (ClassProvider.isNestedJar(path))
+                nested.put(path, e);
+        }
+    }
+
+    @Override
+    public List<String> getClassNames() {
+        return new ArrayList<>(entries.keySet());
+    }
+
+    @Override
+    public byte[] getClassBytes(String name) throws IOException {
+        ZipEntry entry = entries.get(name);
+        if (entry == null)
+            return null;
+        try (InputStream in = zip.getInputStream(entry)) {
+            return InheratanceMap.readAll(in);
+        }
+    }
+
+    @Override
+    public List<String> getNestedJars() {
+        return new ArrayList<>(nested.keySet());
+    }
+
+    @Override
+    public ClassProvider openNested(String path) throws IOException {
+        ZipEntry entry = nested.get(path);
+        if (entry == null)
+            throw new FileNotFoundException(path);
+        try (InputStream in = zip.getInputStream(entry)) {
+            return new NestedClassProvider(in);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        zip.close();
+    }
+}
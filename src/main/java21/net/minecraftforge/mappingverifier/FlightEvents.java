@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) Forge Development LLC
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+package net.minecraftforge.mappingverifier;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.List;
+
+import jdk.jfr.Category;
+import jdk.jfr.Configuration;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+
+/**
+ * Java 21 version, loaded from the multi-release section of the jar.
+ * Events are only created if they are enabled, by our own recording or any other, such as one started with -XX:StartFlightRecording.
+ * Runtimes without the jdk.jfr module, such as a jlink image, get the same no-op spans as Java 8, as nothing in {@link Recorder} is loaded.
+ */
+final class FlightEvents {
+    private static final String PREFIX = "net.minecraftforge.mappingverifier.";
+    private static final String CATEGORY = "Mapping Verifier";
+    private static final Span NONE = count -> {};
+    private static final boolean AVAILABLE = ModuleLayer.boot().findModule("jdk.jfr").isPresent();
+
+    private FlightEvents() {}
+
+    static boolean record(File file) throws IOException {
+        return AVAILABLE && Recorder.record(file);
+    }
+
+    static Span loadJar(String jar, boolean owned) {
+        return AVAILABLE ? Recorder.loadJar(jar, owned) : NONE;
+    }
+
+    static Span parseClass(int size, boolean owned) {
+        return AVAILABLE ? Recorder.parseClass(size, owned) : NONE;
+    }
+
+    static Span resolve() {
+        return AVAILABLE ? Recorder.resolve() : NONE;
+    }
+
+    static Span task(String task, String phase) {
+        return AVAILABLE ? Recorder.task(task, phase) : NONE;
+    }
+
+    static Span verifyClass(String cls, int tasks) {
+        return AVAILABLE ? Recorder.verifyClass(cls, tasks) : NONE;
+    }
+
+    @FunctionalInterface
+    interface Span {
+        void end(long count);
+
+        default void end(String cls, long count) {
+            end(count);
+        }
+    }
+
+    /**
+     * Everything that links against jdk.jfr, only loaded once it's known to be there.
+     */
+    private static final class Recorder {
+        private Recorder() {}
+
+        static boolean record(File file) throws IOException {
+            if (!FlightRecorder.isAvailable())
+                return false;
+
+            Recording recording;
+            try {
+                recording = new Recording(Configuration.getConfiguration("default"));
+            } catch (ParseException e) {
+                throw new IOException("Invalid default Flight Recorder configuration", e);
+            }
+            recording.setName("MappingVerifier");
+            for (Class<? extends Event> event : List.of(LoadJar.class, ParseClass.class, Resolve.class, TaskPhase.class, VerifyClass.class))
+                recording.enable(event);
+            recording.setToDisk(true);
+            recording.setDestination(file.toPath());
+            recording.setDumpOnExit(true);
+            recording.start();
+            return true;
+        }
+
+        static Span loadJar(String jar, boolean owned) {
+            LoadJar ret = new LoadJar();
+            if (!ret.isEnabled())
+                return NONE;
+            ret.jar = jar;
+            ret.owned = owned;
+            ret.begin();
+            return ret;
+        }
+
+        static Span parseClass(int size, boolean owned) {
+            ParseClass ret = new ParseClass();
+            if (!ret.isEnabled())
+                return NONE;
+            ret.size = size;
+            ret.owned = owned;
+            ret.begin();
+            return ret;
+        }
+
+        static Span resolve() {
+            Resolve ret = new Resolve();
+            if (!ret.isEnabled())
+                return NONE;
+            ret.begin();
+            return ret;
+        }
+
+        static Span task(String task, String phase) {
+            TaskPhase ret = new TaskPhase();
+            if (!ret.isEnabled())
+                return NONE;
+            ret.task = task;
+            ret.phase = phase;
+            ret.begin();
+            return ret;
+        }
+
+        static Span verifyClass(String cls, int tasks) {
+            VerifyClass ret = new VerifyClass();
+            if (!ret.isEnabled())
+                return NONE;
+            ret.cls = cls;
+            ret.tasks = tasks;
+            ret.begin();
+            return ret;
+        }
+
+        @Name(PREFIX + "LoadJar")
+        @Label("Load Jar")
+        @Category(CATEGORY)
+        static class LoadJar extends Event implements Span {
+            @Label("Jar")
+            String jar;
+            @Label("Owned")
+            boolean owned;
+            @Label("Classes")
+            long classes;
+
+            @Override
+            public void end(long count) {
+                this.classes = count;
+                commit();
+            }
+        }
+
+        @Name(PREFIX + "ParseClass")
+        @Label("Parse Class")
+        @Category(CATEGORY)
+        static class ParseClass extends Event implements Span {
+            @Label("Class")
+            String cls;
+            @Label("Owned")
+            boolean owned;
+            @Label("Size")
+            @DataAmount
+            int size;
+            @Label("Members")
+            long members;
+
+            @Override
+            public void end(long count) {
+                this.members = count;
+                commit();
+            }
+
+            @Override
+            public void end(String cls, long count) {
+                this.cls = cls;
+                end(count);
+            }
+        }
+
+        @Name(PREFIX + "Resolve")
+        @Label("Resolve")
+        @Category(CATEGORY)
+        static class Resolve extends Event implements Span {
+            @Label("Classes")
+            long classes;
+
+            @Override
+            public void end(long count) {
+                this.classes = count;
+                commit();
+            }
+        }
+
+        @Name(PREFIX + "TaskPhase")
+        @Label("Task Phase")
+        @Category(CATEGORY)
+        static class TaskPhase extends Event implements Span {
+            @Label("Task")
+            String task;
+            @Label("Phase")
+            String phase;
+            @Label("Errors")
+            long errors;
+
+            @Override
+            public void end(long count) {
+                this.errors = count;
+                commit();
+            }
+        }
+
+        @Name(PREFIX + "VerifyClass")
+        @Label("Verify Class")
+        @Category(CATEGORY)
+        static class VerifyClass extends Event implements Span {
+            @Label("Class")
+            String cls;
+            @Label("Tasks")
+            int tasks;
+            @Label("References")
+            long references;
+
+            @Override
+            public void end(long count) {
+                this.references = count;
+                commit();
+            }
+        }
+    }
+}
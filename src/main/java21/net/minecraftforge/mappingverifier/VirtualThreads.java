@@ -0,0 +1,18 @@
+/*
+ * Copyright (c) Forge Development LLC
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+package net.minecraftforge.mappingverifier;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Java 21 version, loaded from the multi-release section of the jar.
+ * The executor is never shut down, it doesn't keep any threads alive while it has nothing to run.
+ */
+final class VirtualThreads {
+    static final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    private VirtualThreads() {}
+}
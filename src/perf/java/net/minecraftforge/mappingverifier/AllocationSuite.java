@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) Forge Development LLC
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+package net.minecraftforge.mappingverifier;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Level;
+
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+import net.minecraftforge.mappingverifier.InheratanceMap.Class;
+import net.minecraftforge.mappingverifier.InheratanceMap.Method;
+import net.minecraftforge.mappingverifier.InheratanceMap.Node;
+
+/**
+ * Measures the bytes allocated per unit of work by the hot paths, on a generated {@link Corpus}, and fails if any is over its budget.
+ * So allocation that creeps back into a hot path is caught, even when it's too small to show in the timings.
+ * <p>
+ * Each operation is warmed up first, so the JIT has removed what it can, and the lowest of several rounds is used.
+ * Only the current thread is measured, which is fine as the verifiers run on the thread that calls them.
+ * <p>
+ * The budgets were measured on Java 17 with compressed oops, with some headroom. Other JVMs, or removing allocation, may need them
+ * lowered, never raise one without knowing why it grew.
+ */
+public class AllocationSuite {
+    private static final int WARMUP = 5;
+    private static final long WARMUP_NANOS = 3_000_000_000L;
+    private static final int ROUNDS = 5;
+
+    private final List<String> report = new ArrayList<>();
+    private final List<String> failures = new ArrayList<>();
+    private final com.sun.management.ThreadMXBean threads;
+
+    private AllocationSuite(com.sun.management.ThreadMXBean threads) {
+        this.threads = threads;
+    }
+
+    public static void main(String[] args) throws Exception {
+        OptionParser parser = new OptionParser();
+        OptionSpec<Integer> classesArg = parser.accepts("classes").withRequiredArg().ofType(Integer.class).defaultsTo(5000);
+        OptionSet options = parser.parse(args);
+
+        if (!run(options.valueOf(classesArg)))
+            System.exit(1);
+    }
+
+    private static boolean run(int size) throws Exception {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            System.out.println("This JVM can not measure allocation, skipping");
+            return true;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            System.out.println("This JVM can not measure allocation, skipping");
+            return true;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        // The verifiers log every phase, which would be measured too.
+        Main.LOG.setLevel(Level.WARNING);
+
+        StringBuilder mapping = new StringBuilder();
+        Map<String, byte[]> classes = new Corpus().setClasses(size).setErrors(0).generate(mapping);
+
+        MappingVerifier verifier = new MappingVerifier();
+        verifier.loadMap(new ByteArrayInputStream(mapping.toString().getBytes(StandardCharsets.UTF_8)));
+        verifier.setRetainErrors(false);
+        verifier.loadJar(ClassProvider.fromMemory(classes));
+        InheratanceMap inh = verifier.getInheratance();
+        inh.resolve();
+        // Fill the lazily computed stacks, so the lookups don't measure computing them.
+        inh.getOwned().forEach(Class::getStack);
+
+        AllocationSuite suite = new AllocationSuite(threads);
+
+        suite.measure("processClass", "class", 20000, () -> {
+            InheratanceMap map = new InheratanceMap();
+            for (byte[] data : classes.values())
+                map.processClass(data, true);
+            return classes.size();
+        });
+
+        suite.measure("getMethod", "lookup", 40, () -> {
+            long ret = 0;
+            for (Class cls : inh.getOwned()) {
+                for (Method mtd : cls.getMethods().values()) {
+                    for (Class parent : cls.getStack()) {
+                        parent.getMethod(mtd.name, mtd.desc);
+                        ret++;
+                    }
+                }
+            }
+            return ret;
+        });
+
+        suite.measure("findNode", "reference", 192, () -> {
+            long ret = 0;
+            for (Class cls : inh.getOwned()) {
+                for (Reference ref : cls.getReferences()) {
+                    Class owner = inh.findClass(ref.owner);
+                    if (owner == null || ref.kind == Reference.Kind.CLASS)
+                        continue;
+                    Node node = ref.kind == Reference.Kind.FIELD
+                        ? AccessLevels.findNode(owner, c -> c.getField(ref.name))
+                        : AccessLevels.findNode(owner, c -> c.getMethod(ref.name, ref.desc));
+                    if (node != null)
+                        ret++;
+                }
+            }
+            return ret;
+        });
+
+        int owned = inh.getOwned().size();
+        for (IClassVerifier task : new IClassVerifier[] { new AccessLevels(verifier), new UniqueIDs(verifier), new OverrideNames(verifier) }) {
+            suite.measure(task.getName(), "class", budget(task.getName()), () -> {
+                verifier.visit(Collections.singletonList(task));
+                return owned;
+            });
+        }
+
+        suite.report.forEach(System.out::println);
+        if (!suite.failures.isEmpty()) {
+            System.out.println("Over budget:");
+            suite.failures.forEach(line -> System.out.println("  " + line));
+            return false;
+        }
+        System.out.println("Passed");
+        return true;
+    }
+
+    private static long budget(String task) {
+        switch (task) {
+            case "AccessLevels":  return 480;
+            case "UniqueIDs":     return 24000;
+            case "OverrideNames": return 40000;
+        }
+        throw new IllegalArgumentException("No budget for " + task);
+    }
+
+    private void measure(String name, String unit, long budget, Work work) {
+        // Small corpora finish the rounds before the JIT compiles anything, so also warm up for a while.
+        long end = System.nanoTime() + WARMUP_NANOS;
+        for (int x = 0; x < WARMUP || System.nanoTime() < end; x++)
+            work.run();
+
+        long best = Long.MAX_VALUE;
+        long units = 0;
+        for (int x = 0; x < ROUNDS; x++) {
+            long start = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            units = work.run();
+            long bytes = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - start;
+            best = Math.min(best, bytes);
+        }
+
+        double per = units == 0 ? 0 : (double)best / units;
+        String line = String.format(Locale.ENGLISH, "%-14s %10.1f bytes/%-9s budget %6d  %s", name, per, unit, budget, per > budget ? "OVER" : "ok");
+        report.add(line);
+        if (per > budget)
+            failures.add(String.format(Locale.ENGLISH, "%s: %.1f bytes per %s, budget %d, over %d units", name, per, unit, budget, units));
+    }
+
+    @FunctionalInterface
+    private interface Work {
+        /** @return The number of units of work done. */
+        long run();
+    }
+}
@@ -0,0 +1,538 @@
+/*
+ * Copyright (c) Forge Development LLC
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+package net.minecraftforge.mappingverifier;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Generates an obfuscated looking jar, and a TSRG mapping for it, so the verifiers can be run at scale without any real jar.
+ * The same settings always generate the same classes and mapping.
+ * <p>
+ * The classes form chains of a set depth, each class extending the one before it, spread round robin over the packages.
+ * Each class has public, protected, package private and private members, overrides the public methods of its chain, and
+ * references the class before it and a class in its own package. Some chains start with a class implementing two interfaces
+ * from a lattice of diamond shaped interfaces, or a generic interface through a bridge method, and some methods contain a lambda.
+ * <p>
+ * The mapping gives every member its own SRG name, shared by overrides, and is correct except for the planted errors.
+ * Every kind of error the verifiers report is planted a set number of times, and each is returned so a run can check
+ * that exactly those were found.
+ */
+public class Corpus {
+    public enum Shape {
+        /** Long chains and nothing else, so the stacks are deep. */
+        DEEP,
+        /** Short chains that all start with diamond interfaces, so classes reach the same interface through many paths. */
+        DIAMOND,
+        /** Classes that only extend Object, so nothing is shared. */
+        WIDE
+    }
+
+    /**
+     * The kinds of planted errors, and what each is reported as.
+     */
+    public enum Error {
+        /** A class moved out of its package, that uses package private members of its old package. */
+        ACCESS,
+        /** A field given the mapped name of a different field of its parent. */
+        SHADE_FIELD,
+        /** A method given the mapped name of a different method of its parent. */
+        SHADE_METHOD,
+        /** A private method given the SRG name of its parent's private method with the same obfuscated name. */
+        BAD_OVERRIDE,
+        /** An override given a different name then the method it overrides. */
+        OVERRIDE,
+        /** A bridge method given a different name then the method it bridges to. */
+        BRIDGE,
+        /** Two unrelated methods given the same SRG name. */
+        DUPLICATE_ID
+    }
+
+    /**
+     * An error that was planted in the mapping, found if a diagnostic of the task and kind names the class,
+     * or contains the token in its lines.
+     */
+    public static class Planted {
+        public final Error error;
+        public final String task;
+        public final String kind;
+        public final String cls;
+        public final String token;
+
+        private Planted(Error error, String task, String kind, String cls, String token) {
+            this.error = error;
+            this.task = task;
+            this.kind = kind;
+            this.cls = cls;
+            this.token = token;
+        }
+
+        public boolean matches(Diagnostic diagnostic) {
+            if (!task.equals(diagnostic.getTask()) || !kind.equals(diagnostic.getKind()))
+                return false;
+            if (cls != null)
+                return cls.equals(diagnostic.getClassName());
+            return diagnostic.getLines().stream().anyMatch(line -> line.contains(token));
+        }
+
+        @Override
+        public String toString() {
+            return error + " " + task + '/' + kind + ' ' + (cls != null ? cls : token);
+        }
+    }
+
+    private static final int WIDTH = 8;
+    private static final int LAYERS = 4;
+    private static final int VIRTUALS = 3;
+    private static final String OBJECT = "java/lang/Object";
+    private static final String GENERIC = "p0/G";
+    private static final Handle METAFACTORY = new Handle(Opcodes.H_INVOKESTATIC, "java/lang/invoke/LambdaMetafactory", "metafactory",
+        "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;Ljava/lang/invoke/MethodType;Ljava/lang/invoke/MethodHandle;Ljava/lang/invoke/MethodType;)Ljava/lang/invoke/CallSite;", false);
+
+    private int classes = 10000;
+    private int depth = 8;
+    private int packages = 32;
+    private double diamonds = 0.1;
+    private double bridges = 0.1;
+    private double lambdas = 0.25;
+    private int errors = 5;
+    private long seed = 0;
+
+    // Filled while generating
+    private Map<Integer, Error> plants;
+    private List<Planted> planted;
+    private int ids;
+
+    public static Corpus of(Shape shape, int classes) {
+        Corpus ret = new Corpus().setClasses(classes);
+        switch (shape) {
+            case DEEP:    return ret.setDepth(40).setDiamonds(0).setBridges(0);
+            case DIAMOND: return ret.setDepth(4).setDiamonds(1).setBridges(0);
+            case WIDE:    return ret.setDepth(1).setDiamonds(0).setBridges(0);
+        }
+        return ret;
+    }
+
+    public Corpus setClasses(int classes) {
+        this.classes = classes;
+        return this;
+    }
+
+    /** @param depth The number of classes in each chain, 1 for no inheritance between owned classes. */
+    public Corpus setDepth(int depth) {
+        if (depth < 1)
+            throw new IllegalArgumentException("Invalid depth: " + depth);
+        this.depth = depth;
+        return this;
+    }
+
+    public Corpus setPackages(int packages) {
+        if (packages < 1)
+            throw new IllegalArgumentException("Invalid packages: " + packages);
+        this.packages = packages;
+        return this;
+    }
+
+    /** @param share The share of chains that start by implementing two of the diamond interfaces, from 0 to 1. */
+    public Corpus setDiamonds(double share) {
+        this.diamonds = share;
+        return this;
+    }
+
+    /** @param share The share of chains that start by implementing the generic interface through a bridge method, from 0 to 1. */
+    public Corpus setBridges(double share) {
+        this.bridges = share;
+        return this;
+    }
+
+    /** @param share The share of classes with a lambda, from 0 to 1. */
+    public Corpus setLambdas(double share) {
+        this.lambdas = share;
+        return this;
+    }
+
+    /** @param errors The number of each kind of error to plant, fewer if there aren't enough suitable classes. */
+    public Corpus setErrors(int errors) {
+        this.errors = errors;
+        return this;
+    }
+
+    public Corpus setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Writes the classes to a jar, and the mapping to a TSRG file.
+     * @return The planted errors.
+     */
+    public List<Planted> write(File jar, File mapping) throws IOException {
+        try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(jar.toPath())));
+             Writer map = Files.newBufferedWriter(mapping.toPath(), StandardCharsets.UTF_8)) {
+            return generate((name, data) -> {
+                try {
+                    zip.putNextEntry(new ZipEntry(name + ".class"));
+                    zip.write(data);
+                    zip.closeEntry();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, map);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Generates the classes in memory, for the benchmarks.
+     * @param mapping Gets the TSRG mapping.
+     * @return The bytes of every class, by internal name, parents before their children.
+     */
+    public Map<String, byte[]> generate(StringBuilder mapping) {
+        Map<String, byte[]> ret = new LinkedHashMap<>();
+        try {
+            generate(ret::put, mapping);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return ret;
+    }
+
+    /**
+     * Generates the classes, and the TSRG mapping.
+     * @param out Gets every class, by internal name, parents before their children.
+     * @return The planted errors.
+     */
+    public List<Planted> generate(BiConsumer<String, byte[]> out, Appendable mapping) throws IOException {
+        Random rand = new Random(seed);
+        this.plants = plan();
+        this.planted = new ArrayList<>();
+        this.ids = 0;
+
+        // The diamond lattice, each interface extending two of the layer before it.
+        List<String> last = Collections.emptyList();
+        Map<String, String> ifaceMethods = new HashMap<>();
+        for (int layer = 0, index = 0; layer < LAYERS; layer++) {
+            List<String> current = new ArrayList<>();
+            for (int x = 0; x < WIDTH; x++, index++) {
+                String name = pkg(index) + "/I" + index;
+                String[] parents = last.isEmpty() ? new String[0] : new String[] { last.get(x), last.get((x + 1) % WIDTH) };
+                ClassWriter cw = new ClassWriter(0);
+                cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT, name, null, OBJECT, parents);
+                cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "i" + index, "()V", null, null).visitEnd();
+                cw.visitEnd();
+                out.accept(name, cw.toByteArray());
+
+                String mapped = "func_" + id() + "_i";
+                ifaceMethods.put(name, mapped);
+                mapping.append(name).append(" net/example/").append(name.replace("/I", "/Iface")).append('\n');
+                mapping.append("\ti").append(Integer.toString(index)).append(" ()V ").append(mapped).append('\n');
+                current.add(name);
+            }
+            last = current;
+        }
+
+        ClassWriter gw = new ClassWriter(0);
+        gw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT, GENERIC, "<T:Ljava/lang/Object;>Ljava/lang/Object;", OBJECT, null);
+        gw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "accept", "(Ljava/lang/Object;)V", "(TT;)V", null).visitEnd();
+        gw.visitEnd();
+        out.accept(GENERIC, gw.toByteArray());
+        String accept = "func_" + id() + "_g";
+        mapping.append(GENERIC).append(" net/example/p0/Generic\n");
+        mapping.append("\taccept (Ljava/lang/Object;)V ").append(accept).append('\n');
+
+        // The SRG names of the current chain's public methods, and of the previous class's members.
+        String[] virtuals = new String[VIRTUALS];
+        Map<String, String> parent = new HashMap<>();
+        for (int index = 0; index < classes; index++) {
+            int pos = index % depth;
+            String name = name(index);
+            String parentName = pos == 0 ? OBJECT : name(index - 1);
+            Error plant = plants.get(index);
+
+            List<String> interfaces = new ArrayList<>();
+            boolean bridge = false;
+            if (pos == 0) {
+                for (int x = 0; x < VIRTUALS; x++)
+                    virtuals[x] = "func_" + id() + "_v";
+                if (rand.nextDouble() < diamonds && plant != Error.BRIDGE) {
+                    int first = rand.nextInt(WIDTH);
+                    interfaces.add(last.get(first));
+                    interfaces.add(last.get((first + 1 + rand.nextInt(WIDTH - 1)) % WIDTH));
+                } else if (rand.nextDouble() < bridges || plant == Error.BRIDGE) {
+                    interfaces.add(GENERIC);
+                    bridge = true;
+                }
+            }
+            boolean lambda = rand.nextDouble() < lambdas;
+
+            ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+            cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, name, bridge ? "Ljava/lang/Object;Lp0/G<Ljava/lang/String;>;" : null, parentName, interfaces.toArray(new String[0]));
+
+            String mapped = plant == Error.ACCESS ? "net/example/moved/Class" + index : "net/example/" + pkg(index) + "/Class" + index;
+            mapping.append(name).append(' ').append(mapped).append('\n');
+            Map<String, String> members = new HashMap<>();
+
+            // Fields, every class has the same obfuscated names like a real obfuscated jar.
+            int[] access = { Opcodes.ACC_PUBLIC, Opcodes.ACC_PROTECTED, 0 };
+            for (int x = 0; x < access.length; x++) {
+                String fld = Character.toString((char)('a' + x));
+                cw.visitField(access[x], fld, "I", null, null).visitEnd();
+                String fmapped = "field_" + id() + "_f";
+                if (plant == Error.SHADE_FIELD && x == 2)
+                    fmapped = parent.get("a");
+                members.put(fld, fmapped);
+                mapping.append('\t').append(fld).append(' ').append(fmapped).append('\n');
+            }
+
+            constructor(cw, parentName);
+
+            for (int x = 0; x < VIRTUALS; x++) {
+                String mtd = "v" + x;
+                MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, mtd, "()V", null, null);
+                body(mv, index, name, plant, x == 1 && lambda);
+                String vmapped = virtuals[x];
+                if (plant == Error.OVERRIDE && x == 0)
+                    vmapped = "func_" + id() + "_v";
+                mapping.append('\t').append(mtd).append(" ()V ").append(vmapped).append('\n');
+            }
+            if (lambda) {
+                MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_SYNTHETIC, "lambda$v1$0", "()V", null, null);
+                mv.visitCode();
+                mv.visitInsn(Opcodes.RETURN);
+                mv.visitMaxs(0, 0);
+                mv.visitEnd();
+            }
+
+            // Every class has its own public and package private method, with names unique to it, and a private one with a shared name.
+            simple(cw, Opcodes.ACC_PUBLIC, "o" + index);
+            String omapped = "func_" + id() + "_o";
+            if (plant == Error.SHADE_METHOD || plant == Error.DUPLICATE_ID)
+                omapped = parent.get("o");
+            members.put("o", omapped);
+            mapping.append("\to").append(Integer.toString(index)).append(" ()V ").append(omapped).append('\n');
+
+            simple(cw, 0, "q" + index);
+            mapping.append("\tq").append(Integer.toString(index)).append(" ()V func_").append(Integer.toString(id())).append("_q\n");
+
+            simple(cw, Opcodes.ACC_PRIVATE, "r");
+            String rmapped = plant == Error.BAD_OVERRIDE ? parent.get("r") : "func_" + id() + "_r";
+            members.put("r", rmapped);
+            mapping.append("\tr ()V ").append(rmapped).append('\n');
+
+            simple(cw, Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "s");
+
+            for (String iface : interfaces) {
+                if (iface.equals(GENERIC))
+                    continue;
+                String mtd = "i" + iface.substring(iface.lastIndexOf("/I") + 2);
+                simple(cw, Opcodes.ACC_PUBLIC, mtd);
+                mapping.append('\t').append(mtd).append(" ()V ").append(ifaceMethods.get(iface)).append('\n');
+            }
+
+            if (bridge) {
+                simple(cw, Opcodes.ACC_PUBLIC, "accept", "(Ljava/lang/String;)V");
+                MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_BRIDGE | Opcodes.ACC_SYNTHETIC, "accept", "(Ljava/lang/Object;)V", null, null);
+                mv.visitCode();
+                mv.visitVarInsn(Opcodes.ALOAD, 0);
+                mv.visitVarInsn(Opcodes.ALOAD, 1);
+                mv.visitTypeInsn(Opcodes.CHECKCAST, "java/lang/String");
+                mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, name, "accept", "(Ljava/lang/String;)V", false);
+                mv.visitInsn(Opcodes.RETURN);
+                mv.visitMaxs(0, 0);
+                mv.visitEnd();
+
+                // The bridge and the method it bridges to must have the same name.
+                String target = plant == Error.BRIDGE ? "func_" + id() + "_g" : accept;
+                mapping.append("\taccept (Ljava/lang/String;)V ").append(target).append('\n');
+                mapping.append("\taccept (Ljava/lang/Object;)V ").append(accept).append('\n');
+            }
+
+            cw.visitEnd();
+            out.accept(name, cw.toByteArray());
+
+            if (plant != null)
+                expect(plant, index, members);
+            parent = members;
+        }
+
+        return planted;
+    }
+
+    /*
+     * Picks the classes to plant each kind of error in, spread evenly, skipping classes that don't fit the kind.
+     */
+    private Map<Integer, Error> plan() {
+        Map<Integer, Error> ret = new HashMap<>();
+        Set<Integer> used = new HashSet<>();
+        for (Error error : Error.values()) {
+            for (int x = 0; x < errors; x++) {
+                int start = (int)((x + 1L) * classes / (errors + 1)) + error.ordinal() * 3;
+                for (int index = start; index < classes; index++) {
+                    if (fits(error, index, used)) {
+                        ret.put(index, error);
+                        // Keep the classes around a plant clean, so one plant can't cause another's errors.
+                        for (int y = index - 1; y <= index + 1; y++)
+                            used.add(y);
+                        used.add(index + packages);
+                        break;
+                    }
+                }
+            }
+        }
+        return ret;
+    }
+
+    private boolean fits(Error error, int index, Set<Integer> used) {
+        if (used.contains(index))
+            return false;
+        int pos = index % depth;
+        switch (error) {
+            case ACCESS:       return index >= packages && !used.contains(index - packages);
+            case SHADE_FIELD:
+            case SHADE_METHOD:
+            case BAD_OVERRIDE: return pos > 0;
+            // The last class of a chain, so no child overrides it using the chain's name.
+            case OVERRIDE:     return pos > 0 && (pos == depth - 1 || index == classes - 1);
+            case BRIDGE:       return pos == 0 && depth > 1;
+            // The first class of a chain, so it's unrelated to the class before it.
+            case DUPLICATE_ID: return pos == 0 && index > 0;
+        }
+        return false;
+    }
+
+    private void expect(Error error, int index, Map<String, String> members) {
+        String name = name(index);
+        switch (error) {
+            case ACCESS:
+                planted.add(new Planted(error, "AccessLevels", "Invalid Access", name, null));
+                break;
+            case SHADE_FIELD:
+                planted.add(new Planted(error, "OverrideNames", "Shade", name, null));
+                // Reusing the SRG name also reuses its ID.
+                planted.add(new Planted(error, "UniqueIDs", "Duplicate ID", null, members.get("c")));
+                break;
+            case SHADE_METHOD:
+                planted.add(new Planted(error, "OverrideNames", "Shade", name, null));
+                planted.add(new Planted(error, "UniqueIDs", "Duplicate ID", null, members.get("o")));
+                break;
+            case BAD_OVERRIDE:
+                planted.add(new Planted(error, "OverrideNames", "BadOverride", name, null));
+                break;
+            case OVERRIDE:
+                planted.add(new Planted(error, "OverrideNames", "Override", name, null));
+                planted.add(new Planted(error, "OverrideNames", "Invalid Override", null, name + ".v0()V"));
+                break;
+            case BRIDGE:
+                planted.add(new Planted(error, "OverrideNames", "Invalid Override", null, name + ".accept(Ljava/lang/String;)V"));
+                break;
+            case DUPLICATE_ID:
+                planted.add(new Planted(error, "UniqueIDs", "Duplicate ID", null, members.get("o")));
+                break;
+        }
+    }
+
+    private int id() {
+        return ++ids;
+    }
+
+    private String pkg(int index) {
+        return "p" + (index % packages);
+    }
+
+    private String name(int index) {
+        return pkg(index) + "/C" + index;
+    }
+
+    private void body(MethodVisitor mv, int index, String name, Error plant, boolean lambda) {
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitFieldInsn(Opcodes.GETFIELD, name, "b", "I");
+        mv.visitInsn(Opcodes.POP);
+
+        if (index > 0) {
+            // A public method of a class in another package.
+            String other = name(index - 1);
+            mv.visitTypeInsn(Opcodes.NEW, other);
+            mv.visitInsn(Opcodes.DUP);
+            mv.visitMethodInsn(Opcodes.INVOKESPECIAL, other, "<init>", "()V", false);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, other, "o" + (index - 1), "()V", false);
+        }
+
+        // Package private members of a class in the same package, unless that class was moved away by a plant.
+        if (index >= packages && plants.get(index - packages) != Error.ACCESS) {
+            String same = name(index - packages);
+            mv.visitTypeInsn(Opcodes.NEW, same);
+            mv.visitInsn(Opcodes.DUP);
+            mv.visitMethodInsn(Opcodes.INVOKESPECIAL, same, "<init>", "()V", false);
+            mv.visitInsn(Opcodes.DUP);
+            mv.visitFieldInsn(Opcodes.GETFIELD, same, "c", "I");
+            mv.visitInsn(Opcodes.POP);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, same, "q" + (index - packages), "()V", false);
+        }
+
+        if (lambda) {
+            mv.visitInvokeDynamicInsn("run", "()Ljava/lang/Runnable;", METAFACTORY,
+                Type.getType("()V"), new Handle(Opcodes.H_INVOKESTATIC, name, "lambda$v1$0", "()V", false), Type.getType("()V"));
+            mv.visitInsn(Opcodes.POP);
+        }
+
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void constructor(ClassWriter cw, String parent) {
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, parent, "<init>", "()V", false);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void simple(ClassWriter cw, int access, String name) {
+        simple(cw, access, name, "()V");
+    }
+
+    private static void simple(ClassWriter cw, int access, String name, String desc) {
+        MethodVisitor mv = cw.visitMethod(access, name, desc, null, null);
+        mv.visitCode();
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.asList("classes=" + classes, "depth=" + depth, "packages=" + packages, "diamonds=" + diamonds,
+            "bridges=" + bridges, "lambdas=" + lambdas, "errors=" + errors, "seed=" + seed).toString();
+    }
+}
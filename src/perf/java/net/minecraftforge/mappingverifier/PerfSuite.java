@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) Forge Development LLC
+ * SPDX-License-Identifier: LGPL-2.1-only
+ */
+package net.minecraftforge.mappingverifier;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.logging.Level;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+
+/**
+ * Runs every default task against generated corpora of increasing size, checking that exactly the planted errors are found,
+ * and that the time and peak heap haven't regressed from a stored baseline.
+ * <p>
+ * The baseline is only meaningful on the machine it was recorded on, so CI machines should record their own using {@code --update}.
+ * Sizes missing from the baseline are recorded, but not compared.
+ */
+public class PerfSuite {
+    private static final long MB = 1024 * 1024;
+    private static final int LAYERED_CLASSES = 5000;
+
+    public static void main(String[] args) throws Exception {
+        OptionParser parser = new OptionParser();
+        OptionSpec<Integer> sizesArg = parser.accepts("sizes").withRequiredArg().ofType(Integer.class).withValuesSeparatedBy(',').defaultsTo(10000, 50000, 200000);
+        OptionSpec<File> workArg = parser.accepts("work").withRequiredArg().ofType(File.class).required();
+        OptionSpec<File> baselineArg = parser.accepts("baseline").withRequiredArg().ofType(File.class).required();
+        OptionSpec<File> resultsArg = parser.accepts("results").withRequiredArg().ofType(File.class);
+        OptionSpec<Double> toleranceArg = parser.accepts("tolerance").withRequiredArg().ofType(Double.class).defaultsTo(0.25);
+        OptionSpec<Void> updateArg = parser.accepts("update");
+        OptionSet options = parser.parse(args);
+
+        File work = options.valueOf(workArg);
+        File baselineFile = options.valueOf(baselineArg);
+        double tolerance = options.valueOf(toleranceArg);
+
+        // The verifiers log every phase, which at these sizes is mostly noise.
+        Main.LOG.setLevel(Level.WARNING);
+        log("Baseline:  " + baselineFile);
+        log("Tolerance: " + Math.round(tolerance * 100) + "%");
+
+        Properties baseline = load(baselineFile);
+        Map<String, String> results = new TreeMap<>();
+        List<String> failures = new ArrayList<>();
+        checkLayered(failures);
+
+        for (int size : options.valuesOf(sizesArg)) {
+            Result result = run(size, new File(work, Integer.toString(size)));
+            failures.addAll(result.failures);
+
+            String prefix = size + ".";
+            results.put(prefix + "load.ms", Long.toString(result.loadMs));
+            results.put(prefix + "verify.ms", Long.toString(result.verifyMs));
+            results.put(prefix + "heap.mb", Long.toString(result.heapMb));
+
+            compare(failures, baseline, prefix + "load.ms", result.loadMs, tolerance);
+            compare(failures, baseline, prefix + "verify.ms", result.verifyMs, tolerance);
+            compare(failures, baseline, prefix + "heap.mb", result.heapMb, tolerance);
+        }
+
+        if (options.has(resultsArg))
+            save(options.valueOf(resultsArg), results);
+
+        if (options.has(updateArg)) {
+            Properties updated = load(baselineFile);
+            updated.putAll(results);
+            Map<String, String> sorted = new TreeMap<>();
+            updated.forEach((k, v) -> sorted.put((String)k, (String)v));
+            save(baselineFile, sorted);
+            log("Updated baseline: " + baselineFile);
+        }
+
+        if (!failures.isEmpty()) {
+            log("Failures:");
+            failures.forEach(line -> log("  " + line));
+            System.exit(1);
+        }
+        log("Passed");
+    }
+
+    private static Result run(int size, File dir) throws IOException {
+        Result ret = new Result();
+        if (!dir.exists() && !dir.mkdirs())
+            throw new IOException("Could not create directory: " + dir);
+
+        log("Size: " + size);
+        File jar = new File(dir, "corpus.jar");
+        File map = new File(dir, "mapping.tsrg");
+        long start = System.nanoTime();
+        List<Corpus.Planted> planted = new Corpus().setClasses(size).write(jar, map);
+        log("  Generate: " + ms(start) + "ms");
+
+        List<Diagnostic> found = Collections.synchronizedList(new ArrayList<>());
+        gc();
+
+        start = System.nanoTime();
+        MappingVerifier mv = new MappingVerifier();
+        mv.addDefaultTasks();
+        mv.setSink(found::add);
+        mv.setRetainErrors(false);
+        mv.loadMap(map);
+        mv.loadJar(jar);
+        ret.loadMs = ms(start);
+
+        start = System.nanoTime();
+        mv.verify();
+        ret.verifyMs = ms(start);
+        ret.heapMb = peak() / MB;
+
+        log("  Load:     " + ret.loadMs + "ms");
+        log("  Verify:   " + ret.verifyMs + "ms");
+        log("  Heap:     " + ret.heapMb + "MB");
+
+        List<Diagnostic> unexpected = new ArrayList<>(found);
+        for (Corpus.Planted plant : planted) {
+            if (!found.stream().anyMatch(plant::matches))
+                ret.failures.add(size + ": Missing " + plant);
+            unexpected.removeIf(plant::matches);
+        }
+        for (Diagnostic diagnostic : unexpected)
+            ret.failures.add(size + ": Unexpected " + diagnostic.getTask() + '/' + diagnostic.getKind() + ' ' + String.join(" ", diagnostic.getLines()));
+        log("  Planted:  " + planted.size() + ", " + found.size() + " diagnostics, " + unexpected.size() + " unexpected");
+
+        return ret;
+    }
+
+    /*
+     * Builds the same classes twice, once in a single map, and once with the first half frozen as a map of libraries that the rest is
+     * layered on, the way the daemon shares its libraries. Both have to give every class the same stack, and every method the same roots.
+     */
+    private static void checkLayered(List<String> failures) {
+        Map<String, byte[]> classes = new Corpus().setClasses(LAYERED_CLASSES).generate(new StringBuilder());
+        List<String> names = new ArrayList<>(classes.keySet());
+        int split = names.size() / 2;
+
+        // A library method that implements an owned interface's method, because an owned class extends the library and implements the interface.
+        classes.put("lib/B", type(Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, "lib/B", "java/lang/Object", null, true));
+        classes.put("own/I", type(Opcodes.ACC_PUBLIC | Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT, "own/I", "java/lang/Object", null, true));
+        classes.put("own/C", type(Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, "own/C", "lib/B", "own/I", false));
+        names.add(split++, "lib/B");
+        names.add("own/I");
+        names.add("own/C");
+
+        InheratanceMap single = new InheratanceMap();
+        InheratanceMap base = new InheratanceMap();
+        for (int x = 0; x < names.size(); x++) {
+            single.processClass(classes.get(names.get(x)), x >= split);
+            if (x < split)
+                base.processClass(classes.get(names.get(x)), false);
+        }
+        single.freeze();
+
+        InheratanceMap layered = new InheratanceMap(null, base.freeze());
+        for (String name : names.subList(split, names.size()))
+            layered.processClass(classes.get(name), true);
+        layered.freeze();
+
+        List<String> differ = new ArrayList<>();
+        for (String name : names) {
+            if (!describe(single, single.findClass(name)).equals(describe(layered, layered.findClass(name))))
+                differ.add(name);
+        }
+        log("Layered:   " + differ.size() + "/" + names.size() + " classes differ");
+        if (!differ.isEmpty())
+            failures.add("Layered map differs from a single map for " + differ.size() + " classes, such as " + differ.get(0));
+    }
+
+    // A class with a public foo()V method if asked, abstract for interfaces.
+    private static byte[] type(int access, String name, String parent, String intf, boolean foo) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_8, access, name, null, parent, intf == null ? null : new String[] { intf });
+        if (foo) {
+            boolean abstracted = (access & Opcodes.ACC_INTERFACE) != 0;
+            MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC | (abstracted ? Opcodes.ACC_ABSTRACT : 0), "foo", "()V", null, null);
+            if (!abstracted) {
+                mv.visitCode();
+                mv.visitInsn(Opcodes.RETURN);
+                mv.visitMaxs(0, 0);
+            }
+            mv.visitEnd();
+        }
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    // The stack, and the roots of every method as the map sees them, by name so classes from different maps can be compared.
+    private static String describe(InheratanceMap map, InheratanceMap.Class cls) {
+        StringBuilder buf = new StringBuilder();
+        cls.getStack().forEach(parent -> buf.append(parent.getName()).append(' '));
+        for (InheratanceMap.Method mtd : new TreeMap<>(cls.getMethods()).values()) {
+            buf.append('\n').append(mtd.getSimple()).append(" ->");
+            map.getRoots(mtd).stream().map(InheratanceMap.Method::getKey).sorted().forEach(key -> buf.append(' ').append(key));
+        }
+        return buf.toString();
+    }
+
+    private static void compare(List<String> failures, Properties baseline, String key, long value, double tolerance) {
+        String old = baseline.getProperty(key);
+        if (old == null)
+            return;
+        long expected = Long.parseLong(old);
+        if (value > expected * (1 + tolerance))
+            failures.add(String.format(Locale.ENGLISH, "%s: %d, baseline %d (+%.0f%%)", key, value, expected, (value - expected) * 100.0 / Math.max(1, expected)));
+    }
+
+    /*
+     * Collects as much as possible and resets the peaks, so the next peak only covers what runs after this.
+     */
+    private static void gc() {
+        for (int x = 0; x < 3; x++)
+            System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            pool.resetPeakUsage();
+    }
+
+    private static long peak() {
+        long ret = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null)
+                ret += pool.getPeakUsage().getUsed();
+        }
+        return ret;
+    }
+
+    private static long ms(long start) {
+        return (System.nanoTime() - start) / 1000000;
+    }
+
+    private static Properties load(File file) throws IOException {
+        Properties ret = new Properties();
+        if (file.exists()) {
+            try (Reader in = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                ret.load(in);
+            }
+        }
+        return ret;
+    }
+
+    // Written by hand, so the file is sorted and has no timestamp, and only changes when the numbers do.
+    private static void save(File file, Map<String, String> values) throws IOException {
+        if (file.getParentFile() != null && !file.getParentFile().exists())
+            file.getParentFile().mkdirs();
+        try (Writer out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, String> entry : values.entrySet())
+                out.write(entry.getKey() + '=' + entry.getValue() + '\n');
+        }
+    }
+
+    private static void log(String line) {
+        System.out.println(line);
+    }
+
+    private static class Result {
+        private long loadMs;
+        private long verifyMs;
+        private long heapMb;
+        private final List<String> failures = new ArrayList<>();
+    }
+}